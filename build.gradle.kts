@@ -14,9 +14,29 @@ repositories {
     mavenCentral()
 }
 
+// JMH benchmarks for the import pipeline live in src/jmh/java and run without Burp: the source
+// set carries minimal stand-ins for the Montoya types the parser touches.
+sourceSets {
+    create("jmh") {
+        compileClasspath += sourceSets.main.get().output
+        runtimeClasspath += sourceSets.main.get().output
+    }
+}
+
+configurations["jmhImplementation"].extendsFrom(configurations.implementation.get())
+
+val jmhVersion = "1.37"
+
 dependencies {
     compileOnly("net.portswigger.burp.extensions:montoya-api:2025.12")
     implementation("com.google.code.gson:gson:2.10.1")
+
+    testImplementation(platform("org.junit:junit-bom:5.11.4"))
+    testImplementation("org.junit.jupiter:junit-jupiter")
+    testRuntimeOnly("org.junit.platform:junit-platform-launcher")
+
+    "jmhImplementation"("org.openjdk.jmh:jmh-core:$jmhVersion")
+    "jmhAnnotationProcessor"("org.openjdk.jmh:jmh-generator-annprocess:$jmhVersion")
 }
 
 tasks.withType<JavaCompile>().configureEach {
@@ -25,8 +45,37 @@ tasks.withType<JavaCompile>().configureEach {
     options.encoding = "UTF-8"
 }
 
+tasks.test {
+    useJUnitPlatform()
+}
+
 tasks.named<Jar>("jar") {
     duplicatesStrategy = DuplicatesStrategy.EXCLUDE
     from(configurations.runtimeClasspath.get().filter { it.isDirectory })
     from(configurations.runtimeClasspath.get().filterNot { it.isDirectory }.map { zipTree(it) })
-}
\ No newline at end of file
+}
+
+// Standalone converter without Burp: ./gradlew cliJar, then
+// java -jar build/libs/proxyman-log-importer-1.0.0-cli.jar --format har -o capture.har capture.proxymanlogv2
+tasks.register<Jar>("cliJar") {
+    group = "build"
+    description = "Assembles the headless Proxyman converter as a runnable jar."
+    archiveClassifier.set("cli")
+    manifest {
+        attributes["Main-Class"] = "ProxymanCli"
+    }
+    duplicatesStrategy = DuplicatesStrategy.EXCLUDE
+    from(sourceSets.main.get().output)
+    from(configurations.runtimeClasspath.get().filter { it.isDirectory })
+    from(configurations.runtimeClasspath.get().filterNot { it.isDirectory }.map { zipTree(it) })
+}
+
+// ./gradlew jmh                                  all benchmarks with the GC profiler
+// ./gradlew jmh -PjmhArgs="ParseBenchmark -p threads=1,8 -prof gc"
+tasks.register<JavaExec>("jmh") {
+    group = "benchmark"
+    description = "Runs the JMH import pipeline benchmarks."
+    classpath = sourceSets["jmh"].runtimeClasspath
+    mainClass.set("org.openjdk.jmh.Main")
+    args(((findProperty("jmhArgs") as String?) ?: "-prof gc").split(" ").filter { it.isNotBlank() })
+}
@@ -0,0 +1,77 @@
+import bench.ImporterHooks;
+
+import java.io.File;
+import java.io.StringReader;
+import java.util.List;
+
+// Default-package side of bench.ImporterHooks; see that interface for why it exists.
+public class JmhImporterHooks implements ImporterHooks {
+
+    @Override
+    public int parse(File archive, int threads) throws Exception {
+        int[] count = new int[1];
+        ProxymanParser.parse(archive, threads, entry -> count[0]++);
+        return count[0];
+    }
+
+    @Override
+    public Object openIndex(File archive) throws Exception {
+        return ProxymanParser.parse(archive);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public int indexSize(Object index) {
+        return ((List<ProxymanParser.ParsedEntry>) index).size();
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public long materialize(Object index, int i) throws Exception {
+        ProxymanParser.ParsedEntry pe = ((List<ProxymanParser.ParsedEntry>) index).get(i);
+        return BurpMessages.toMessages(pe, ProxymanParser.materializeRaw(pe.source.archive(), pe, pe.source.stats)).size;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public void close(Object index) {
+        List<ProxymanParser.ParsedEntry> entries = (List<ProxymanParser.ParsedEntry>) index;
+        if (!entries.isEmpty()) entries.get(0).source.close();
+    }
+
+    @Override
+    public Object decode(String json, boolean withBodies) throws Exception {
+        return ProxymanDecoder.read(new StringReader(json), withBodies);
+    }
+
+    @Override
+    public byte[] buildRequest(Object logEntry) {
+        ProxymanModels.Request req = ((ProxymanModels.LogEntry) logEntry).request;
+        return new HttpMessageBuilder()
+                .startLine(req.method, req.fullPath, req.version)
+                .buildHeaders(req.header)
+                .hostIfMissing(req.host, req.port != null ? req.port : 443, true)
+                .body(req.bodyData)
+                .build();
+    }
+
+    @Override
+    public byte[] buildResponse(Object logEntry) {
+        ProxymanModels.Response resp = ((ProxymanModels.LogEntry) logEntry).response;
+        return new HttpMessageBuilder()
+                .startLine(resp.version, Integer.toString(resp.status), resp.statusPhrase)
+                .buildHeaders(resp.header)
+                .body(resp.bodyData)
+                .build();
+    }
+
+    @Override
+    public int base64DecodedLength(String b64) {
+        return ProxymanDecoder.base64DecodedLength(b64);
+    }
+
+    @Override
+    public void decodeBase64(String b64, byte[] dst, int length) {
+        ProxymanDecoder.decodeBase64(b64, dst, 0, length);
+    }
+}
@@ -0,0 +1,81 @@
+package bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Base64;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+// The per-entry building blocks in isolation: JSON decode (index pass without bodies and full
+// decode with bodies), message assembly including header emission, and base64 body decoding.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class HelpersBenchmark {
+
+    @Param({"12"})
+    public int headers;
+
+    @Param({"1024", "65536"})
+    public int bodySize;
+
+    @Param({"false", "true"})
+    public boolean objectForm;
+
+    private ImporterHooks hooks;
+    private String json;
+    private Object logEntry;
+    private String base64;
+    private byte[] decoded;
+
+    @Setup
+    public void setUp() throws Exception {
+        hooks = ImporterHooks.load();
+        json = SyntheticArchive.entryJson(7, headers, bodySize, objectForm);
+        logEntry = hooks.decode(json, true);
+
+        byte[] raw = new byte[bodySize];
+        new Random(7).nextBytes(raw);
+        base64 = Base64.getEncoder().encodeToString(raw);
+        decoded = new byte[bodySize];
+    }
+
+    @Benchmark
+    public Object decodeIndexOnly() throws Exception {
+        return hooks.decode(json, false);
+    }
+
+    @Benchmark
+    public Object decodeWithBodies() throws Exception {
+        return hooks.decode(json, true);
+    }
+
+    @Benchmark
+    public byte[] buildRequest() {
+        return hooks.buildRequest(logEntry);
+    }
+
+    @Benchmark
+    public byte[] buildResponse() {
+        return hooks.buildResponse(logEntry);
+    }
+
+    @Benchmark
+    public byte[] decodeBase64() {
+        hooks.decodeBase64(base64, decoded, hooks.base64DecodedLength(base64));
+        return decoded;
+    }
+}
@@ -0,0 +1,73 @@
+package bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.util.concurrent.TimeUnit;
+
+// Rebuilding one entry's request/response bytes from the archive, as the viewer, Repeater and
+// Site Map do on a cache miss. With -prof gc, gc.alloc.rate.norm is the allocation per entry.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 3)
+@Measurement(iterations = 5, time = 3)
+@Fork(1)
+public class MaterializeBenchmark {
+
+    @Param({"2000"})
+    public int entries;
+
+    @Param({"12"})
+    public int headers;
+
+    @Param({"fixed:512", "lognormal:16384:4194304"})
+    public String bodySizes;
+
+    @Param({"0.5"})
+    public double objectFormShare;
+
+    private ImporterHooks hooks;
+    private File archive;
+    private Object index;
+    private int size;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        hooks = ImporterHooks.load();
+        archive = new SyntheticArchive()
+                .entries(entries)
+                .headers(headers)
+                .bodySizes(bodySizes)
+                .objectFormShare(objectFormShare)
+                .writeTemp();
+        index = hooks.openIndex(archive);
+        size = hooks.indexSize(index);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        hooks.close(index);
+        archive.delete();
+    }
+
+    @Benchmark
+    public long materialize() throws Exception {
+        int i = next;
+        next = i + 1 == size ? 0 : i + 1;
+        return hooks.materialize(index, i);
+    }
+}
@@ -0,0 +1,85 @@
+package bench;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.util.concurrent.TimeUnit;
+
+// Whole-file index pass (ProxymanParser.parse). The aux counters turn the per-op score into
+// entries/s and archive bytes/s; add -prof gc for allocation per entry (gc.alloc.rate.norm / entries).
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class ParseBenchmark {
+
+    @Param({"10000"})
+    public int entries;
+
+    @Param({"12"})
+    public int headers;
+
+    @Param({"lognormal:2048:1048576"})
+    public String bodySizes;
+
+    @Param({"0.5"})
+    public double objectFormShare;
+
+    @Param({"1", "4"})
+    public int threads;
+
+    private ImporterHooks hooks;
+    private File archive;
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class Throughput {
+        public long entries;
+        public long archiveBytes;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            entries = 0;
+            archiveBytes = 0;
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        hooks = ImporterHooks.load();
+        archive = new SyntheticArchive()
+                .entries(entries)
+                .headers(headers)
+                .bodySizes(bodySizes)
+                .objectFormShare(objectFormShare)
+                .writeTemp();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        archive.delete();
+    }
+
+    @Benchmark
+    public int parse(Throughput counters) throws Exception {
+        int n = hooks.parse(archive, threads);
+        counters.entries += n;
+        counters.archiveBytes += archive.length();
+        return n;
+    }
+}
@@ -0,0 +1,159 @@
+package bench;
+
+import com.google.gson.stream.JsonWriter;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.Random;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+// Writes a synthetic .proxymanlogv2 archive with the same layout Proxyman exports: one deflated
+// request_<n> JSON entry per exchange. Output is deterministic for a given set of parameters.
+public final class SyntheticArchive {
+    private static final int[] STATUSES = {200, 200, 200, 201, 204, 304, 400, 401, 404, 500};
+
+    private static final String[] HEADER_NAMES = {
+            "Accept", "Accept-Encoding", "Accept-Language", "User-Agent", "Authorization", "Cookie",
+            "Content-Type", "Cache-Control", "X-Request-Id", "X-Client-Version", "Connection", "Date"
+    };
+
+    private int entries = 1000;
+    private int headers = 12;
+    private String bodySizes = "lognormal:2048:1048576";
+    private double objectFormShare = 0.5;
+    private long seed = 42;
+
+    public SyntheticArchive entries(int entries) { this.entries = entries; return this; }
+
+    public SyntheticArchive headers(int headers) { this.headers = headers; return this; }
+
+    // "fixed:N", "uniform:MIN:MAX" or "lognormal:MEDIAN:MAX" (bytes).
+    public SyntheticArchive bodySizes(String bodySizes) { this.bodySizes = bodySizes; return this; }
+
+    // Share of entries whose method/version/status use the object form instead of plain values.
+    public SyntheticArchive objectFormShare(double objectFormShare) { this.objectFormShare = objectFormShare; return this; }
+
+    public SyntheticArchive seed(long seed) { this.seed = seed; return this; }
+
+    public File writeTemp() throws IOException {
+        File file = File.createTempFile("synthetic-", ".proxymanlogv2");
+        file.deleteOnExit();
+        write(file);
+        return file;
+    }
+
+    public void write(File file) throws IOException {
+        Random random = new Random(seed);
+        String[] parts = bodySizes.split(":");
+
+        try (ZipOutputStream zip = new ZipOutputStream(new FileOutputStream(file))) {
+            for (int i = 0; i < entries; i++) {
+                zip.putNextEntry(new ZipEntry("request_" + i));
+                Writer w = new OutputStreamWriter(zip, StandardCharsets.UTF_8);
+                JsonWriter json = new JsonWriter(w);
+                writeEntry(json, random, parts);
+                json.flush();
+                zip.closeEntry();
+            }
+        }
+    }
+
+    public static String entryJson(long seed, int headers, int bodySize, boolean objectForm) throws IOException {
+        StringWriter sw = new StringWriter();
+        SyntheticArchive a = new SyntheticArchive().headers(headers).objectFormShare(objectForm ? 1 : 0);
+        a.writeEntry(new JsonWriter(sw), new Random(seed), new String[]{"fixed", Integer.toString(bodySize)});
+        return sw.toString();
+    }
+
+    private void writeEntry(JsonWriter json, Random random, String[] sizeSpec) throws IOException {
+        boolean objectForm = random.nextDouble() < objectFormShare;
+        String host = "api" + random.nextInt(20) + ".example.com";
+        int status = STATUSES[random.nextInt(STATUSES.length)];
+
+        json.beginObject();
+
+        json.name("request").beginObject();
+        json.name("method");
+        String method = random.nextInt(4) == 0 ? "POST" : "GET";
+        if (objectForm) json.beginObject().name("name").value(method).endObject();
+        else json.value(method);
+        json.name("fullPath").value("https://" + host + "/v1/users/" + random.nextInt(1_000_000)
+                + "/items?page=" + random.nextInt(50) + "&q=a%20b");
+        writeVersion(json, objectForm);
+        json.name("scheme").value("https");
+        json.name("host").value(host);
+        json.name("port").value(443);
+        json.name("isSSL").value(true);
+        writeHeaders(json, random);
+        json.name("bodyData");
+        if (method.equals("POST")) json.value(body(random, Math.min(4096, bodySize(random, sizeSpec))));
+        else json.nullValue();
+        json.endObject();
+
+        json.name("response").beginObject();
+        json.name("status");
+        if (objectForm) json.beginObject().name("code").value(status).name("phrase").value("Phrase").endObject();
+        else json.value(status);
+        writeVersion(json, objectForm);
+        writeHeaders(json, random);
+        json.name("bodyData").value(body(random, bodySize(random, sizeSpec)));
+        json.endObject();
+
+        json.endObject();
+    }
+
+    private void writeVersion(JsonWriter json, boolean objectForm) throws IOException {
+        json.name("version");
+        if (objectForm) json.beginObject().name("major").value(1).name("minor").value(1).endObject();
+        else json.value("HTTP/1.1");
+    }
+
+    private void writeHeaders(JsonWriter json, Random random) throws IOException {
+        json.name("header").beginObject().name("entries").beginArray();
+        for (int h = 0; h < headers; h++) {
+            String name = HEADER_NAMES[h % HEADER_NAMES.length] + (h >= HEADER_NAMES.length ? "-" + h : "");
+            json.beginObject();
+            json.name("key").beginObject()
+                    .name("name").value(name)
+                    .name("nameInLowercase").value(name.toLowerCase())
+                    .endObject();
+            json.name("value").value(h % 5 == 0 ? "v%2F" + random.nextInt(100) : "value-" + random.nextInt(100));
+            json.name("isEnabled").value(true);
+            json.endObject();
+        }
+        json.endArray().endObject();
+    }
+
+    private static int bodySize(Random random, String[] spec) {
+        return switch (spec[0]) {
+            case "fixed" -> Integer.parseInt(spec[1]);
+            case "uniform" -> {
+                int min = Integer.parseInt(spec[1]);
+                int max = Integer.parseInt(spec[2]);
+                yield min + random.nextInt(Math.max(1, max - min + 1));
+            }
+            case "lognormal" -> {
+                double median = Double.parseDouble(spec[1]);
+                int max = Integer.parseInt(spec[2]);
+                yield (int) Math.min(max, median * Math.exp(random.nextGaussian()));
+            }
+            default -> throw new IllegalArgumentException("Unknown body size distribution: " + spec[0]);
+        };
+    }
+
+    // Loosely JSON-shaped text so bodies compress roughly like real API traffic.
+    private static String body(Random random, int size) {
+        if (size <= 0) return "";
+        byte[] bytes = new byte[size];
+        String alphabet = "{\"id\":,[]abcdefghijklmnopqrstuvwxyz0123456789 ";
+        for (int i = 0; i < size; i++) bytes[i] = (byte) alphabet.charAt(random.nextInt(alphabet.length()));
+        return Base64.getEncoder().encodeToString(bytes);
+    }
+}
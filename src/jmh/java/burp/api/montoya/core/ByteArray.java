@@ -0,0 +1,23 @@
+package burp.api.montoya.core;
+
+import java.nio.charset.StandardCharsets;
+
+// Benchmark-only stand-in for the Montoya type: just enough for ProxymanParser to run without
+// Burp. Wraps the array without copying so the benchmarks measure the importer, not the stub.
+public interface ByteArray {
+    byte[] getBytes();
+
+    int length();
+
+    static ByteArray byteArray(byte[] bytes) {
+        return new ByteArray() {
+            @Override public byte[] getBytes() { return bytes; }
+
+            @Override public int length() { return bytes.length; }
+        };
+    }
+
+    static ByteArray byteArray(String s) {
+        return byteArray(s.getBytes(StandardCharsets.ISO_8859_1));
+    }
+}
@@ -0,0 +1,20 @@
+package burp.api.montoya.http;
+
+// Benchmark-only stand-in for the Montoya type.
+public interface HttpService {
+    String host();
+
+    int port();
+
+    boolean secure();
+
+    static HttpService httpService(String host, int port, boolean secure) {
+        return new HttpService() {
+            @Override public String host() { return host; }
+
+            @Override public int port() { return port; }
+
+            @Override public boolean secure() { return secure; }
+        };
+    }
+}
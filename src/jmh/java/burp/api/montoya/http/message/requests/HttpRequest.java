@@ -0,0 +1,23 @@
+package burp.api.montoya.http.message.requests;
+
+import burp.api.montoya.core.ByteArray;
+import burp.api.montoya.http.HttpService;
+
+// Benchmark-only stand-in for the Montoya type.
+public interface HttpRequest {
+    HttpService httpService();
+
+    ByteArray toByteArray();
+
+    static HttpRequest httpRequest(HttpService service, ByteArray bytes) {
+        return new HttpRequest() {
+            @Override public HttpService httpService() { return service; }
+
+            @Override public ByteArray toByteArray() { return bytes; }
+        };
+    }
+
+    static HttpRequest httpRequest(String request) {
+        return httpRequest(null, ByteArray.byteArray(request));
+    }
+}
@@ -0,0 +1,16 @@
+package burp.api.montoya.http.message.responses;
+
+import burp.api.montoya.core.ByteArray;
+
+// Benchmark-only stand-in for the Montoya type.
+public interface HttpResponse {
+    ByteArray toByteArray();
+
+    static HttpResponse httpResponse(ByteArray bytes) {
+        return () -> bytes;
+    }
+
+    static HttpResponse httpResponse(String response) {
+        return httpResponse(ByteArray.byteArray(response));
+    }
+}
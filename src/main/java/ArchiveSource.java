@@ -0,0 +1,82 @@
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
+// One imported capture file. Holds the parser that read it and, once opened, the parser's file
+// handle, so entries can be rebuilt lazily until the source is closed.
+public class ArchiveSource implements Closeable {
+    public final File file;
+    public final CaptureParser parser;
+    public final ImportStats stats;
+
+    private Closeable handle;
+    private volatile ImportCache.CachedMessages cached;
+    private boolean closed;
+
+    public ArchiveSource(File file) {
+        this(file, ProxymanParser.INSTANCE, new ImportStats(file.getName()));
+    }
+
+    public ArchiveSource(File file, CaptureParser parser, ImportStats stats) {
+        this.file = file;
+        this.parser = parser;
+        this.stats = stats;
+    }
+
+    // Raw request/response bytes of one entry, from the import cache when attached, otherwise
+    // decoded from the capture file.
+    public ProxymanParser.RawMessages materializeRaw(ProxymanParser.ParsedEntry entry) {
+        return materializeRaw(entry, stats);
+    }
+
+    // As above, recording decode work into stats instead of the import's own; for background
+    // work that must not be counted as part of the import.
+    public ProxymanParser.RawMessages materializeRaw(ProxymanParser.ParsedEntry entry, ImportStats stats) {
+        try {
+            ImportCache.CachedMessages fromCache = this.cached;
+            return fromCache != null ? fromCache.read(entry) : parser.materializeRaw(this, entry, stats);
+        } catch (IOException ex) {
+            throw new UncheckedIOException("Failed to read " + entry.entryName + " from " + file.getName(), ex);
+        } catch (RuntimeException ex) {
+            throw ex;
+        } catch (Exception ex) {
+            throw new IllegalStateException("Failed to read " + entry.entryName + " from " + file.getName(), ex);
+        }
+    }
+
+    // Serve messages from the on-disk import cache; the capture itself is then never opened.
+    void attachCache(ImportCache.CachedMessages cached) {
+        this.cached = cached;
+    }
+
+    boolean hasCache() {
+        return cached != null;
+    }
+
+    synchronized Closeable handle() throws IOException {
+        if (closed) throw new IOException(file.getName() + " has been closed");
+        if (handle == null) handle = parser.open(file);
+        return handle;
+    }
+
+    ProxymanArchive archive() throws IOException {
+        return (ProxymanArchive) handle();
+    }
+
+    @Override
+    public synchronized void close() {
+        closed = true;
+        MessageCache.SHARED.evictSource(this);
+        BodyStore.SHARED.evictSource(this);
+        DecodedMessages.SHARED.evictSource(this);
+        if (cached != null) {
+            try { cached.close(); } catch (IOException ignored) {}
+            cached = null;
+        }
+        if (handle != null) {
+            try { handle.close(); } catch (IOException ignored) {}
+            handle = null;
+        }
+    }
+}
@@ -0,0 +1,157 @@
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Imports several archives into one timeline. Files are parsed concurrently, but entries are
+// handed to the listener strictly in file order (each file in its own order): the first file
+// streams live while later ones queue up behind it. Entries whose fingerprint is already in
+// the caller's seen set are counted as duplicates and dropped.
+public class BatchImport {
+    private static final ProxymanParser.ParsedEntry END =
+            new ProxymanParser.ParsedEntry(null, "", -1, "", 0, false, "", "", 0, 0, "", -1, -1);
+
+    public interface Listener extends ProxymanParser.EntryListener {
+        // Called in file order once all of a file's entries were offered. entries holds every
+        // entry the file produced, duplicates included; error is set if the file was unreadable.
+        void onFileDone(File file, List<ProxymanParser.ParsedEntry> entries, boolean fromCache, Exception error);
+    }
+
+    private static final class FileTask {
+        final File file;
+        final BlockingQueue<ProxymanParser.ParsedEntry> queue = new LinkedBlockingQueue<>();
+        volatile ArchiveSource source;
+        volatile int done;
+        volatile int total;
+        volatile boolean fromCache;
+        volatile Exception error;
+
+        FileTask(File file) { this.file = file; }
+    }
+
+    // Expands selected directories to the captures beneath them; files keep selection order.
+    // Selected files are taken as they are, their format is detected when they are parsed.
+    public static List<File> expand(File[] selection) {
+        List<File> out = new ArrayList<>();
+        for (File f : selection) {
+            if (f.isDirectory()) collect(f, out);
+            else if (f.isFile()) out.add(f);
+        }
+        return out;
+    }
+
+    private static void collect(File dir, List<File> out) {
+        File[] children = dir.listFiles();
+        if (children == null) return;
+        Arrays.sort(children, Comparator.comparing(File::getName));
+        for (File child : children) {
+            if (child.isDirectory()) collect(child, out);
+            else if (CaptureParsers.isCaptureFile(child)) out.add(child);
+        }
+    }
+
+    // threads is the total budget: up to that many files run at once and share it between them.
+    public static void run(List<File> files, int threads, ImportCache cache, Set<Long> seen,
+                           ImportStats stats, Listener listener) throws InterruptedException {
+        if (files.isEmpty()) return;
+        int parallelFiles = Math.min(files.size(), Math.max(1, threads));
+        int threadsPerFile = Math.max(1, threads / parallelFiles);
+
+        AtomicInteger threadIds = new AtomicInteger();
+        ExecutorService pool = Executors.newFixedThreadPool(parallelFiles, r -> {
+            Thread t = new Thread(r, "proxyman-import-" + threadIds.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+
+        List<FileTask> tasks = new ArrayList<>(files.size());
+        for (File file : files) tasks.add(new FileTask(file));
+
+        // Index of the first file whose source the listener has not taken over yet.
+        int handedOver = 0;
+        try {
+            for (FileTask task : tasks) pool.execute(() -> parse(task, threadsPerFile, cache, stats, listener));
+
+            for (int i = 0; i < tasks.size(); i++) {
+                FileTask task = tasks.get(i);
+                List<ProxymanParser.ParsedEntry> all = new ArrayList<>();
+                while (true) {
+                    if (listener.isCancelled()) return;
+                    ProxymanParser.ParsedEntry pe = task.queue.poll(100, TimeUnit.MILLISECONDS);
+                    if (pe == null) continue;
+                    if (pe == END) break;
+
+                    all.add(pe);
+                    if (seen.add(pe.fingerprint)) {
+                        listener.onEntry(pe);
+                        handedOver = i + 1;
+                    } else {
+                        stats.entryDuplicate();
+                    }
+                    reportProgress(tasks, listener);
+                }
+                reportProgress(tasks, listener);
+                listener.onFileDone(task.file, all, task.fromCache, task.error);
+                handedOver = i + 1;
+            }
+        } finally {
+            // Archives parsed ahead of a cancel were never seen by the listener; close them here.
+            pool.shutdownNow();
+            pool.awaitTermination(10, TimeUnit.SECONDS);
+            for (int i = handedOver; i < tasks.size(); i++) {
+                ArchiveSource source = tasks.get(i).source;
+                if (source != null) source.close();
+            }
+        }
+    }
+
+    private static void parse(FileTask task, int threads, ImportCache cache, ImportStats stats, Listener listener) {
+        ProxymanParser.EntryListener sink = new ProxymanParser.EntryListener() {
+            @Override public void onEntry(ProxymanParser.ParsedEntry entry) {
+                if (task.source == null) task.source = entry.source;
+                task.queue.add(entry);
+            }
+
+            @Override public void onProgress(int done, int total) {
+                task.done = done;
+                task.total = total;
+            }
+
+            @Override public boolean isCancelled() { return listener.isCancelled(); }
+        };
+
+        try {
+            if (cache != null && cache.isEnabled()) {
+                try {
+                    task.fromCache = cache.load(task.file, sink, stats);
+                } catch (Exception ex) {
+                    // An unreadable cache is never fatal; the archive itself may still parse.
+                    task.fromCache = false;
+                }
+            }
+            if (!task.fromCache) CaptureParsers.parse(task.file, threads, sink, stats);
+        } catch (Exception ex) {
+            task.error = ex;
+            stats.fileFailed(task.file.getName(), ex);
+        } finally {
+            task.queue.add(END);
+        }
+    }
+
+    private static void reportProgress(List<FileTask> tasks, Listener listener) {
+        int done = 0, total = 0;
+        for (FileTask t : tasks) {
+            done += t.done;
+            total += t.total;
+        }
+        listener.onProgress(done, total);
+    }
+}
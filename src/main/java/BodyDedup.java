@@ -0,0 +1,70 @@
+import java.io.Flushable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.CRC32C;
+
+// Content-addressed index over the message bodies written to one data file, so a body that
+// repeats across entries (config blobs, images, bundles) is stored once and later messages point
+// at the first copy. Keys are CRC-32C plus length; a hit is compared byte for byte with the file
+// before it is used, so a collision only costs a second copy. Not thread-safe.
+final class BodyDedup {
+    // Smaller bodies are written inline; their table entries would cost more than they save.
+    static final int MIN_BODY = 1024;
+    private static final int COMPARE_CHUNK = 1 << 16;
+
+    private final FileChannel channel;
+    private final Flushable pending;
+    private final Map<Long, Long> positions = new HashMap<>();
+    private final ByteBuffer scratch = ByteBuffer.allocate(COMPARE_CHUNK);
+    private long bodies;
+    private long bytes;
+
+    // pending is flushed before the file is read back, for writers that buffer ahead of channel.
+    BodyDedup(FileChannel channel, Flushable pending) {
+        this.channel = channel;
+        this.pending = pending;
+    }
+
+    // Position of an earlier copy of body[off, off + len) in the file, or -1 if the caller has to
+    // write it; it is then remembered at position, where the caller writes it.
+    long share(byte[] body, int off, int len, long position) throws IOException {
+        if (len < MIN_BODY) return -1;
+
+        CRC32C crc = new CRC32C();
+        crc.update(body, off, len);
+        long key = (crc.getValue() << 32) | len;
+
+        Long earlier = positions.get(key);
+        if (earlier == null) {
+            positions.put(key, position);
+            return -1;
+        }
+        pending.flush();
+        if (!sameBytes(earlier, body, off, len)) return -1;
+
+        bodies++;
+        bytes += len;
+        return earlier;
+    }
+
+    long sharedBodies() { return bodies; }
+
+    long savedBytes() { return bytes; }
+
+    private boolean sameBytes(long position, byte[] body, int off, int len) throws IOException {
+        for (int done = 0; done < len; ) {
+            scratch.clear().limit(Math.min(COMPARE_CHUNK, len - done));
+            while (scratch.hasRemaining()) {
+                if (channel.read(scratch, position + done + scratch.position()) < 0) return false;
+            }
+            int n = scratch.position();
+            if (!Arrays.equals(scratch.array(), 0, n, body, off + done, off + done + n)) return false;
+            done += n;
+        }
+        return true;
+    }
+}
@@ -0,0 +1,214 @@
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+// Inverted index of the words in request and response bodies, filled on a background thread as
+// rows are imported so body~ terms can be answered without rebuilding every message. Words are
+// runs of ASCII letters, digits, '_' and non-ASCII bytes, lower-cased; gzip and deflate bodies are
+// inflated first and binary content types are skipped. A row is "complete" when every word of its
+// bodies made it into the index; only complete rows can be ruled out, everything else is left to
+// the scan. Indexing stops taking new rows once the memory budget is spent. Rows not served from
+// the import cache are decoded from the capture again for this, a second pass on top of the
+// table's (and a third when the cache write follows); that work goes to a private ImportStats so
+// the import's figures stay its own.
+public final class BodyIndex {
+    private static final int MAX_WORD = 64;
+    private static final int MAX_BODY = 4 * 1024 * 1024;
+    // Rough heap cost of a new word (string, map entry, posting list) and of one posting.
+    private static final int WORD_COST = 96;
+    private static final int POSTING_COST = 6;
+
+    private final long budget;
+    private final HashMap<String, FilterIndex.IntList> words = new HashMap<>();
+    private final BitSet indexed = new BitSet();
+    private final BitSet complete = new BitSet();
+    private final ImportStats scratch = new ImportStats(null);
+    private long bytes;
+    private int generation;
+
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "proxyman-body-index");
+        t.setDaemon(true);
+        t.setPriority(Thread.MIN_PRIORITY);
+        return t;
+    });
+
+    public BodyIndex(long budgetBytes) {
+        this.budget = budgetBytes;
+    }
+
+    // Queues a row for indexing; rows must be added in ascending order.
+    public void add(int row, ProxymanParser.ParsedEntry e) {
+        int gen;
+        synchronized (this) {
+            if (bytes >= budget) return;
+            gen = generation;
+        }
+        executor.execute(() -> index(row, e, gen));
+    }
+
+    // Answers body terms of q from the rows indexed so far.
+    public synchronized FilterQuery.BodyLookup lookup(FilterQuery q) {
+        Map<FilterQuery.Term, BitSet[]> hits = new IdentityHashMap<>();
+        for (FilterQuery.Term t : q.terms) {
+            if (t.field == FilterQuery.Field.BODY) hits.put(t, match(t.needle));
+        }
+        if (hits.isEmpty()) return null;
+
+        BitSet done = (BitSet) complete.clone();
+        return (t, row) -> {
+            BitSet[] h = hits.get(t);
+            if (h[0].get(row)) return FilterQuery.YES;
+            if (!done.get(row) || h[1] == null || h[1].get(row)) return FilterQuery.SCAN;
+            return FilterQuery.NO;
+        };
+    }
+
+    public synchronized String summary() {
+        return "Body index: " + indexed.cardinality() + " rows, " + words.size() + " words, "
+                + String.format("%.1f MB", bytes / (1024.0 * 1024.0)) + (bytes >= budget ? " (budget reached)" : "");
+    }
+
+    public synchronized void clear() {
+        generation++;
+        words.clear();
+        indexed.clear();
+        complete.clear();
+        bytes = 0;
+    }
+
+    public void close() {
+        clear();
+        executor.shutdownNow();
+    }
+
+    private void index(int row, ProxymanParser.ParsedEntry e, int gen) {
+        synchronized (this) {
+            if (gen != generation || bytes >= budget) return;
+        }
+        Set<String> found = new HashSet<>();
+        boolean whole;
+        try {
+            ProxymanParser.RawMessages raw = e.source.materializeRaw(e, scratch);
+            whole = collect(raw.request, found);
+            if (raw.response != null) whole &= collect(raw.response, found);
+        } catch (Exception ex) {
+            // Closed or unreadable; the row is left to the scan.
+            return;
+        }
+
+        synchronized (this) {
+            if (gen != generation) return;
+            for (String w : found) {
+                FilterIndex.IntList rows = words.get(w);
+                if (rows == null) {
+                    rows = new FilterIndex.IntList();
+                    words.put(w, rows);
+                    bytes += WORD_COST + w.length();
+                }
+                rows.add(row);
+                bytes += POSTING_COST;
+            }
+            indexed.set(row);
+            if (whole) complete.set(row);
+        }
+    }
+
+    // Adds the body words of one raw message; false if some of them were left out.
+    private static boolean collect(byte[] message, Set<String> out) {
+        int body = RawHttp.bodyOffset(message);
+        if (body >= message.length) return true;
+        if (!isText(ProxymanParser.ParsedEntry.mimeType(RawHttp.headerValue(message, body, "Content-Type")))) return false;
+
+        String coding = RawHttp.headerValue(message, body, "Content-Encoding");
+        if (ContentCoding.isEncoded(coding)) {
+            byte[] decoded = ContentCoding.decode(coding, message, body, message.length - body, MAX_BODY + 1);
+            return decoded != null && words(decoded, 0, decoded.length, out);
+        }
+        return words(message, body, message.length, out);
+    }
+
+    private static boolean words(byte[] b, int from, int to, Set<String> out) {
+        boolean whole = to - from <= MAX_BODY;
+        if (!whole) to = from + MAX_BODY;
+
+        byte[] word = new byte[MAX_WORD];
+        int n = 0;
+        boolean tooLong = false;
+        for (int i = from; i <= to; i++) {
+            if (i < to && isWordByte(b[i])) {
+                if (n < MAX_WORD) word[n] = FilterQuery.lower(b[i]);
+                n++;
+                continue;
+            }
+            if (n > MAX_WORD) tooLong = true;
+            else if (n > 0) out.add(new String(word, 0, n, StandardCharsets.ISO_8859_1));
+            n = 0;
+        }
+        return whole && !tooLong;
+    }
+
+    // {rows certainly containing needle, rows that may (null: any)}.
+    private BitSet[] match(byte[] needle) {
+        List<int[]> runs = new ArrayList<>();
+        for (int i = 0, start = -1; i <= needle.length; i++) {
+            boolean inWord = i < needle.length && isWordByte(needle[i]);
+            if (inWord && start < 0) start = i;
+            if (!inWord && start >= 0) {
+                runs.add(new int[]{start, i});
+                start = -1;
+            }
+        }
+        if (runs.isEmpty()) return new BitSet[]{new BitSet(), null};
+
+        // A word in the middle of the needle is a whole body word; one touching either end may
+        // be part of a longer one.
+        BitSet possible = null;
+        for (int[] run : runs) {
+            if (run[1] - run[0] > MAX_WORD) continue;
+            String w = new String(needle, run[0], run[1] - run[0], StandardCharsets.ISO_8859_1);
+            boolean atStart = run[0] == 0;
+            boolean atEnd = run[1] == needle.length;
+
+            BitSet rows = new BitSet();
+            if (!atStart && !atEnd) {
+                FilterIndex.IntList list = words.get(w);
+                if (list != null) addAll(rows, list);
+            } else {
+                for (Map.Entry<String, FilterIndex.IntList> e : words.entrySet()) {
+                    String k = e.getKey();
+                    boolean hit = atStart && atEnd ? k.contains(w) : atStart ? k.endsWith(w) : k.startsWith(w);
+                    if (hit) addAll(rows, e.getValue());
+                }
+            }
+            if (possible == null) possible = rows;
+            else possible.and(rows);
+        }
+
+        // A needle that is one word is found wherever a body word contains it.
+        boolean oneWord = runs.size() == 1 && runs.get(0)[0] == 0 && runs.get(0)[1] == needle.length;
+        return new BitSet[]{oneWord && possible != null ? possible : new BitSet(), possible};
+    }
+
+    private static void addAll(BitSet rows, FilterIndex.IntList list) {
+        for (int i = 0; i < list.size; i++) rows.set(list.values[i]);
+    }
+
+    private static boolean isText(String mimeType) {
+        if (mimeType.isEmpty() || mimeType.startsWith("text/") || mimeType.startsWith("multipart/")) return true;
+        return mimeType.contains("json") || mimeType.contains("xml") || mimeType.contains("javascript")
+                || mimeType.contains("x-www-form-urlencoded") || mimeType.contains("graphql") || mimeType.contains("yaml");
+    }
+
+    private static boolean isWordByte(byte b) {
+        return b < 0 || b >= 'a' && b <= 'z' || b >= 'A' && b <= 'Z' || b >= '0' && b <= '9' || b == '_';
+    }
+}
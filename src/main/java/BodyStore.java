@@ -0,0 +1,155 @@
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+// Spill file for large rebuilt messages. Once an entry at or above the threshold has been
+// decoded, its raw request/response is appended to a temp file and only the slot is kept, so
+// later views copy the bytes back instead of decoding the capture again, and nothing large stays
+// on the heap between views. Bodies repeated across entries are written once (BodyDedup).
+// Cleared with the table; the file is deleted on clear.
+public class BodyStore {
+    public static final BodyStore SHARED = new BodyStore(128 * 1024, 8L * 1024 * 1024 * 1024);
+
+    // Where one entry's messages live in the spill file: request head and body, then response
+    // head and body, as in ImportCache.CachedMessages. A response head length of -1 means none.
+    private static final class Slot {
+        final long[] positions = new long[4];
+        final int[] lengths = new int[4];
+    }
+
+    private final long maxBytes;
+    private final Map<ProxymanParser.ParsedEntry, Slot> slots = new HashMap<>();
+    private volatile long threshold;
+    private File file;
+    private FileChannel channel;
+    private BodyDedup dedup;
+    private long end;
+
+    public BodyStore(long threshold, long maxBytes) {
+        this.threshold = threshold;
+        this.maxBytes = maxBytes;
+    }
+
+    // Messages of at least this many bytes are spilled; 0 turns the store off.
+    public void setThreshold(long threshold) {
+        this.threshold = threshold;
+    }
+
+    public boolean spills(long size) {
+        long t = threshold;
+        return t > 0 && size >= t;
+    }
+
+    // Null when the entry was never spilled or the store was cleared meanwhile.
+    public ProxymanParser.RawMessages get(ProxymanParser.ParsedEntry entry) {
+        Slot slot;
+        FileChannel ch;
+        synchronized (this) {
+            slot = slots.get(entry);
+            ch = channel;
+        }
+        if (slot == null) return null;
+
+        try {
+            byte[] request = read(ch, slot, 0);
+            byte[] response = slot.lengths[2] >= 0 ? read(ch, slot, 2) : null;
+            return new ProxymanParser.RawMessages(request, response);
+        } catch (IOException ex) {
+            return null;
+        }
+    }
+
+    // Spills raw when it is large enough. Failures only cost a later re-decode, so they are
+    // dropped. Writes run under the lock since the dedup table follows the file.
+    public synchronized void put(ProxymanParser.ParsedEntry entry, ProxymanParser.RawMessages raw) {
+        if (!spills(raw.size()) || slots.containsKey(entry) || end + raw.size() > maxBytes) return;
+
+        long start = end;
+        try {
+            if (channel == null) open();
+            Slot slot = new Slot();
+            write(raw.request, slot, 0);
+            if (raw.response != null) write(raw.response, slot, 2);
+            else slot.lengths[2] = -1;
+            slots.put(entry, slot);
+        } catch (IOException ex) {
+            end = start;
+        }
+    }
+
+    // Space is reclaimed only by clear(); the file is append-only.
+    public synchronized void evictSource(ArchiveSource source) {
+        Iterator<ProxymanParser.ParsedEntry> it = slots.keySet().iterator();
+        while (it.hasNext()) {
+            if (it.next().source == source) it.remove();
+        }
+    }
+
+    public synchronized long bytes() {
+        return end;
+    }
+
+    public synchronized long savedBytes() {
+        return dedup != null ? dedup.savedBytes() : 0;
+    }
+
+    public synchronized void clear() {
+        slots.clear();
+        dedup = null;
+        end = 0;
+        if (channel != null) {
+            try { channel.close(); } catch (IOException ignored) {}
+            channel = null;
+        }
+        if (file != null) {
+            if (!file.delete()) file.deleteOnExit();
+            file = null;
+        }
+    }
+
+    private void open() throws IOException {
+        File f = File.createTempFile("proxyman-bodies-", ".bin");
+        f.deleteOnExit();
+        channel = FileChannel.open(f.toPath(), StandardOpenOption.READ, StandardOpenOption.WRITE);
+        dedup = new BodyDedup(channel, () -> {});
+        file = f;
+    }
+
+    // Appends the head of message and, unless the file already holds the same body, its body.
+    private void write(byte[] message, Slot slot, int head) throws IOException {
+        int bodyOffset = RawHttp.bodyOffset(message);
+        slot.positions[head] = end;
+        slot.lengths[head] = bodyOffset;
+        write(ByteBuffer.wrap(message, 0, bodyOffset));
+
+        long body = dedup.share(message, bodyOffset, message.length - bodyOffset, end);
+        slot.positions[head + 1] = body >= 0 ? body : end;
+        slot.lengths[head + 1] = message.length - bodyOffset;
+        if (body < 0) write(ByteBuffer.wrap(message, bodyOffset, message.length - bodyOffset));
+    }
+
+    private void write(ByteBuffer buf) throws IOException {
+        while (buf.hasRemaining()) end += channel.write(buf, end);
+    }
+
+    private static byte[] read(FileChannel ch, Slot slot, int head) throws IOException {
+        int headLength = slot.lengths[head];
+        byte[] out = new byte[headLength + slot.lengths[head + 1]];
+        ByteBuffer buf = ByteBuffer.wrap(out, 0, headLength);
+        readFully(ch, buf, slot.positions[head]);
+        readFully(ch, buf.limit(out.length), slot.positions[head + 1] - headLength);
+        return out;
+    }
+
+    private static void readFully(FileChannel ch, ByteBuffer buf, long position) throws IOException {
+        while (buf.hasRemaining()) {
+            if (ch.read(buf, position + buf.position()) < 0) throw new EOFException("Body store truncated");
+        }
+    }
+}
@@ -0,0 +1,130 @@
+import javax.swing.*;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+// Background bulk operation over a set of imported entries (Send to Repeater, Add to Site Map).
+// Items are processed in batches; between batches the job publishes progress, checks for
+// cancellation and sleeps as needed to stay under the configured rate. A failing item is
+// counted and reported but does not stop the job; an action may also skip an item, giving the
+// reason, and skips are counted per reason.
+public class BulkJob extends SwingWorker<BulkJob.Result, BulkJob.Result> {
+
+    public interface Action {
+        // Null when the item was processed, otherwise why it was skipped.
+        String apply(int index, ProxymanParser.ParsedEntry entry) throws Exception;
+    }
+
+    public interface Listener {
+        void onProgress(Result progress);
+
+        void onDone(Result result);
+    }
+
+    public static class Result {
+        public final int total;
+        public final int succeeded;
+        public final int failed;
+        // Skipped items by reason, in the order the reasons first came up.
+        public final Map<String, Integer> skipped;
+        public final boolean cancelled;
+
+        Result(int total, int succeeded, int failed, Map<String, Integer> skipped, boolean cancelled) {
+            this.total = total;
+            this.succeeded = succeeded;
+            this.failed = failed;
+            this.skipped = skipped;
+            this.cancelled = cancelled;
+        }
+
+        public int done() {
+            int done = succeeded + failed;
+            for (int n : skipped.values()) done += n;
+            return done;
+        }
+    }
+
+    private final String name;
+    private final List<ProxymanParser.ParsedEntry> entries;
+    private final int[] indexes;
+    private final int batchSize;
+    private final int maxPerSecond;
+    private final Action action;
+    private final Listener listener;
+    private final Consumer<String> errorLog;
+
+    private volatile int succeeded;
+    private volatile int failed;
+    private final Map<String, Integer> skipped = new LinkedHashMap<>();
+
+    public BulkJob(String name, List<ProxymanParser.ParsedEntry> entries, int[] indexes, int batchSize,
+                   int maxPerSecond, Action action, Listener listener, Consumer<String> errorLog) {
+        this.name = name;
+        this.entries = entries;
+        this.indexes = indexes;
+        this.batchSize = Math.max(1, batchSize);
+        this.maxPerSecond = maxPerSecond;
+        this.action = action;
+        this.listener = listener;
+        this.errorLog = errorLog;
+    }
+
+    @Override
+    protected Result doInBackground() {
+        long start = System.nanoTime();
+        int processed = 0;
+
+        for (int b = 0; b < indexes.length && !isCancelled(); b += batchSize) {
+            int end = Math.min(indexes.length, b + batchSize);
+            for (int k = b; k < end; k++) {
+                int idx = indexes[k];
+                try {
+                    String skip = action.apply(idx, entries.get(idx));
+                    if (skip == null) {
+                        succeeded++;
+                    } else {
+                        synchronized (skipped) {
+                            skipped.merge(skip, 1, Integer::sum);
+                        }
+                    }
+                } catch (Exception ex) {
+                    failed++;
+                    errorLog.accept(name + " failed at item " + (idx + 1) + ": " + ex.getMessage());
+                }
+            }
+            processed = end;
+            publish(snapshot(false));
+
+            if (maxPerSecond > 0 && processed < indexes.length) {
+                long dueNanos = processed * 1_000_000_000L / maxPerSecond;
+                long sleepMillis = (dueNanos - (System.nanoTime() - start)) / 1_000_000L;
+                if (sleepMillis > 0) {
+                    try {
+                        Thread.sleep(sleepMillis);
+                    } catch (InterruptedException ex) {
+                        Thread.currentThread().interrupt();
+                        break;
+                    }
+                }
+            }
+        }
+        return snapshot(isCancelled());
+    }
+
+    @Override
+    protected void process(List<Result> chunks) {
+        listener.onProgress(chunks.get(chunks.size() - 1));
+    }
+
+    @Override
+    protected void done() {
+        listener.onDone(snapshot(isCancelled()));
+    }
+
+    private Result snapshot(boolean cancelled) {
+        synchronized (skipped) {
+            return new Result(indexes.length, succeeded, failed, new LinkedHashMap<>(skipped), cancelled);
+        }
+    }
+}
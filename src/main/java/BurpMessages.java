@@ -0,0 +1,71 @@
+import burp.api.montoya.core.ByteArray;
+import burp.api.montoya.http.HttpService;
+import burp.api.montoya.http.message.requests.HttpRequest;
+import burp.api.montoya.http.message.responses.HttpResponse;
+
+// Montoya side of the importer: wraps the raw bytes produced by the decode layer as Burp
+// request/response objects, with encoded bodies inflated unless DecodedMessages is turned off,
+// and keeps recently used ones in MessageCache. Large messages are kept in BodyStore instead
+// and copied into fresh Montoya objects on each use. Nothing outside the Burp UI touches this
+// class, which is what lets the decode layer run without Burp.
+public final class BurpMessages {
+
+    public static class Messages {
+        public final HttpRequest request;
+        public final HttpResponse response;
+        public final long size;
+
+        Messages(HttpRequest request, HttpResponse response, long size) {
+            this.request = request;
+            this.response = response;
+            this.size = size;
+        }
+    }
+
+    private BurpMessages() {}
+
+    public static HttpRequest request(ProxymanParser.ParsedEntry entry) { return materialize(entry).request; }
+
+    public static HttpResponse response(ProxymanParser.ParsedEntry entry) { return materialize(entry).response; }
+
+    public static Messages materialize(ProxymanParser.ParsedEntry entry) {
+        Messages cached = MessageCache.SHARED.get(entry);
+        if (cached != null) return cached;
+
+        ImportEvents.Materialize event = new ImportEvents.Materialize();
+        event.begin();
+
+        ProxymanParser.RawMessages raw = BodyStore.SHARED.get(entry);
+        if (raw == null) {
+            raw = entry.source.materializeRaw(entry);
+            // Entries served from the import cache are already read back from disk.
+            if (!entry.source.hasCache()) BodyStore.SHARED.put(entry, raw);
+        }
+        // Spilling and caching are both decided on the wire size, so every message is one or the
+        // other: a small gzip body that inflates past the threshold is cached, not re-decoded.
+        long wireSize = raw.size();
+        if (DecodedMessages.SHARED.isEnabled()) raw = DecodedMessages.SHARED.view(entry, raw);
+        Messages messages = toMessages(entry, raw);
+
+        event.end();
+        if (event.shouldCommit()) {
+            event.entry = entry.entryName;
+            event.size = messages.size;
+            event.commit();
+        }
+
+        if (!BodyStore.SHARED.spills(wireSize)) MessageCache.SHARED.put(entry, messages);
+        return messages;
+    }
+
+    public static Messages toMessages(ProxymanParser.ParsedEntry pe, ProxymanParser.RawMessages raw) {
+        HttpService service = HttpService.httpService(pe.host, pe.port, pe.secure);
+        HttpRequest request = HttpRequest.httpRequest(service, ByteArray.byteArray(raw.request));
+
+        HttpResponse response = raw.response != null
+                ? HttpResponse.httpResponse(ByteArray.byteArray(raw.response))
+                : HttpResponse.httpResponse("HTTP/1.1 0\r\n\r\n");
+
+        return new Messages(request, response, raw.size());
+    }
+}
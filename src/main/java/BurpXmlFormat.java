@@ -0,0 +1,107 @@
+import java.nio.charset.StandardCharsets;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.Base64;
+import java.util.Locale;
+
+// Burp's "Save items" XML, so converted archives can be opened with tools that read Burp
+// exports. Request and response are always base64-encoded, as Burp does by default.
+public class BurpXmlFormat implements ExportFormat {
+    private static final String DOCTYPE = """
+            <?xml version="1.0"?>
+            <!DOCTYPE items [
+            <!ELEMENT items (item*)>
+            <!ATTLIST items burpVersion CDATA "">
+            <!ATTLIST items exportTime CDATA "">
+            <!ELEMENT item (time, url, host, port, protocol, method, path, extension, request, status, responselength, mimetype, response, comment)>
+            <!ELEMENT time (#PCDATA)>
+            <!ELEMENT url (#PCDATA)>
+            <!ELEMENT host (#PCDATA)>
+            <!ATTLIST host ip CDATA "">
+            <!ELEMENT port (#PCDATA)>
+            <!ELEMENT protocol (#PCDATA)>
+            <!ELEMENT method (#PCDATA)>
+            <!ELEMENT path (#PCDATA)>
+            <!ELEMENT extension (#PCDATA)>
+            <!ELEMENT request (#PCDATA)>
+            <!ATTLIST request base64 (true|false) "false">
+            <!ELEMENT status (#PCDATA)>
+            <!ELEMENT responselength (#PCDATA)>
+            <!ELEMENT mimetype (#PCDATA)>
+            <!ELEMENT response (#PCDATA)>
+            <!ATTLIST response base64 (true|false) "false">
+            <!ELEMENT comment (#PCDATA)>
+            ]>
+            """;
+
+    private final String exportTime = ZonedDateTime.now().format(DateTimeFormatter.RFC_1123_DATE_TIME);
+
+    @Override
+    public byte[] header() {
+        return (DOCTYPE + "<items burpVersion=\"\" exportTime=\"" + exportTime + "\">\n").getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Override public byte[] separator() { return new byte[0]; }
+
+    @Override public byte[] footer() { return "</items>\n".getBytes(StandardCharsets.UTF_8); }
+
+    @Override
+    public byte[] entry(ProxymanParser.ParsedEntry e, ProxymanParser.RawMessages raw) {
+        RawHttp response = raw.response != null ? RawHttp.parse(raw.response) : null;
+        Base64.Encoder base64 = Base64.getEncoder();
+
+        StringBuilder sb = new StringBuilder((int) Math.min(1 << 20, raw.size() * 4 / 3 + 1024));
+        sb.append("  <item>\n");
+        sb.append("    <time>").append(exportTime).append("</time>\n");
+        sb.append("    <url>").append(cdata(ExportFormat.url(e))).append("</url>\n");
+        sb.append("    <host ip=\"\">").append(escape(e.host)).append("</host>\n");
+        sb.append("    <port>").append(e.port).append("</port>\n");
+        sb.append("    <protocol>").append(e.secure ? "https" : "http").append("</protocol>\n");
+        sb.append("    <method>").append(cdata(e.method)).append("</method>\n");
+        sb.append("    <path>").append(cdata(e.path)).append("</path>\n");
+        sb.append("    <extension>").append(extension(e.path)).append("</extension>\n");
+        sb.append("    <request base64=\"true\"><![CDATA[").append(base64.encodeToString(raw.request)).append("]]></request>\n");
+        sb.append("    <status>").append(response != null ? e.status : "").append("</status>\n");
+        sb.append("    <responselength>").append(response != null ? raw.response.length : "").append("</responselength>\n");
+        sb.append("    <mimetype>").append(response != null ? mimeType(response.header("Content-Type")) : "").append("</mimetype>\n");
+        sb.append("    <response base64=\"true\">");
+        if (response != null) sb.append("<![CDATA[").append(base64.encodeToString(raw.response)).append("]]>");
+        sb.append("</response>\n");
+        sb.append("    <comment>").append(cdata(e.source.file.getName() + "/" + e.entryName)).append("</comment>\n");
+        sb.append("  </item>\n");
+        return sb.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static String cdata(String s) {
+        return "<![CDATA[" + s.replace("]]>", "]]]]><![CDATA[>") + "]]>";
+    }
+
+    private static String escape(String s) {
+        return s.replace("&", "&amp;").replace("<", "&lt;").replace(">", "&gt;");
+    }
+
+    private static String extension(String path) {
+        int end = path.indexOf('?');
+        String p = end >= 0 ? path.substring(0, end) : path;
+        int slash = p.lastIndexOf('/');
+        int dot = p.lastIndexOf('.');
+        return dot > slash && dot < p.length() - 1 ? escape(p.substring(dot + 1)) : "null";
+    }
+
+    // Burp's coarse MIME categories, derived from the Content-Type header.
+    private static String mimeType(String contentType) {
+        if (contentType == null) return "";
+        String t = contentType.toLowerCase(Locale.ROOT);
+        if (t.contains("json")) return "JSON";
+        if (t.contains("html")) return "HTML";
+        if (t.contains("xml")) return "XML";
+        if (t.contains("javascript") || t.contains("ecmascript")) return "script";
+        if (t.contains("css")) return "CSS";
+        if (t.startsWith("image/")) {
+            int semi = t.indexOf(';');
+            return t.substring(6, semi >= 0 ? semi : t.length()).trim().toUpperCase(Locale.ROOT);
+        }
+        if (t.startsWith("text/")) return "text";
+        return "";
+    }
+}
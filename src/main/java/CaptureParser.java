@@ -0,0 +1,36 @@
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+
+// One capture file format (Proxyman archive, HAR, ...). A parser is stateless: everything about
+// an open file lives in its ArchiveSource, whose handle the parser opens on first use. Formats
+// are registered and detected in CaptureParsers.
+public interface CaptureParser {
+
+    String name();
+
+    // Lower-case file extension, including the dot, that directory imports pick up.
+    String extension();
+
+    // Decides from the file name and its first bytes whether this parser reads the file.
+    boolean accepts(String fileName, byte[] head);
+
+    // Opens the per-file handle kept by ArchiveSource (a mapped zip, a file channel, ...).
+    Closeable open(File file) throws IOException;
+
+    // Cheap digest that changes whenever the captured entries could; part of the import cache key.
+    byte[] digest(File file) throws IOException;
+
+    // Index pass: emits one ParsedEntry per captured exchange, in capture order, without keeping
+    // bodies. Records into source.stats (fileParsed, skipped and failed entries); emitted entries
+    // are counted by the caller.
+    void parse(ArchiveSource source, int threads, ProxymanParser.EntryListener listener) throws Exception;
+
+    // Single pass with bodies for bulk conversion; converted records reach sink in capture order.
+    <T> void convert(ArchiveSource source, int threads, ProxymanParser.EntryConverter<T> converter,
+                     ProxymanParser.ConvertedSink<T> sink) throws Exception;
+
+    // Rebuilds the raw request/response of an entry this parser emitted from source.
+    ProxymanParser.RawMessages materializeRaw(ArchiveSource source, ProxymanParser.ParsedEntry entry,
+                                              ImportStats stats) throws Exception;
+}
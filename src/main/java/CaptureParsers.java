@@ -0,0 +1,105 @@
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+// Registered capture formats and the format-independent entry points used by the batch
+// importer, the import cache and the CLI. The format of a file is detected from its name and
+// first bytes, so callers never pick a parser themselves.
+public final class CaptureParsers {
+    public static final List<CaptureParser> ALL = List.of(ProxymanParser.INSTANCE, HarParser.INSTANCE);
+
+    private static final int HEAD_BYTES = 4096;
+
+    private CaptureParsers() {}
+
+    public static CaptureParser detect(File file) throws IOException {
+        byte[] head;
+        try (InputStream in = new FileInputStream(file)) {
+            head = in.readNBytes(HEAD_BYTES);
+        }
+        String name = file.getName().toLowerCase(Locale.ROOT);
+        for (CaptureParser parser : ALL) {
+            if (parser.accepts(name, head)) return parser;
+        }
+        throw new IOException(file.getName() + " is not a supported capture (" + extensions() + ")");
+    }
+
+    // Whether a directory import should pick up this file.
+    public static boolean isCaptureFile(File file) {
+        String name = file.getName().toLowerCase(Locale.ROOT);
+        for (CaptureParser parser : ALL) {
+            if (name.endsWith(parser.extension())) return true;
+        }
+        return false;
+    }
+
+    public static String extensions() {
+        return String.join(", ", ALL.stream().map(CaptureParser::extension).toArray(String[]::new));
+    }
+
+    public static void parse(File file, int threads, ProxymanParser.EntryListener listener, ImportStats stats) throws Exception {
+        if (file == null || !file.exists()) throw new IllegalArgumentException("File not found.");
+        parse(detect(file), file, threads, listener, stats);
+    }
+
+    // Records into stats, which the caller owns and finishes; one instance may span several files.
+    public static void parse(CaptureParser parser, File file, int threads, ProxymanParser.EntryListener listener,
+                             ImportStats stats) throws Exception {
+        if (file == null || !file.exists()) throw new IllegalArgumentException("File not found.");
+
+        // The source owns the open file from here on; entries read through it lazily until the
+        // caller closes it. Nothing references it if nothing was emitted.
+        ArchiveSource source = new ArchiveSource(file, parser, stats);
+        CountingListener counting = new CountingListener(listener, stats);
+        try {
+            parser.parse(source, threads, counting);
+        } finally {
+            if (counting.emitted == 0) source.close();
+        }
+    }
+
+    // Single pass that hands each converted record to sink in capture order. Nothing refers
+    // back to the file afterwards, so its source is closed on return.
+    public static <T> void convert(File file, int threads, ImportStats stats, ProxymanParser.EntryConverter<T> converter,
+                                   ProxymanParser.ConvertedSink<T> sink) throws Exception {
+        if (file == null || !file.exists()) throw new IllegalArgumentException("File not found.");
+
+        CaptureParser parser = detect(file);
+        try (ArchiveSource source = new ArchiveSource(file, parser, stats)) {
+            parser.convert(source, threads, (entry, raw) -> {
+                T converted = converter.convert(entry, raw);
+                stats.entryEmitted();
+                return converted;
+            }, sink);
+        }
+    }
+
+    static boolean startsWith(byte[] head, byte[] prefix) {
+        return head.length >= prefix.length && Arrays.equals(head, 0, prefix.length, prefix, 0, prefix.length);
+    }
+
+    private static final class CountingListener implements ProxymanParser.EntryListener {
+        private final ProxymanParser.EntryListener delegate;
+        private final ImportStats stats;
+        int emitted;
+
+        CountingListener(ProxymanParser.EntryListener delegate, ImportStats stats) {
+            this.delegate = delegate;
+            this.stats = stats;
+        }
+
+        @Override public void onEntry(ProxymanParser.ParsedEntry entry) {
+            emitted++;
+            stats.entryEmitted();
+            delegate.onEntry(entry);
+        }
+
+        @Override public void onProgress(int done, int total) { delegate.onProgress(done, total); }
+
+        @Override public boolean isCancelled() { return delegate.isCancelled(); }
+    }
+}
@@ -0,0 +1,68 @@
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Locale;
+import java.util.zip.DataFormatException;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.Inflater;
+
+// Decoding of gzip and deflate Content-Encoding for message bodies. br and stacked codings are
+// not supported; callers treat those bodies as opaque.
+final class ContentCoding {
+    // Cap on a decoded body, against decompression bombs in captured traffic.
+    static final int MAX_DECODED = 64 * 1024 * 1024;
+
+    private ContentCoding() {}
+
+    static boolean isEncoded(String coding) {
+        return coding != null && !coding.isBlank() && !coding.trim().equalsIgnoreCase("identity");
+    }
+
+    static boolean isSupported(String coding) {
+        String c = coding == null ? "" : coding.trim().toLowerCase(Locale.ROOT);
+        return c.equals("gzip") || c.equals("x-gzip") || c.equals("deflate");
+    }
+
+    // Output past limit is dropped, so a result of exactly limit bytes may be truncated.
+    static byte[] decode(String coding, byte[] src, int off, int len, int limit) {
+        if (!isSupported(coding)) return null;
+        try {
+            return coding.trim().equalsIgnoreCase("deflate")
+                    ? inflate(src, off, len, limit)
+                    : read(new GZIPInputStream(new ByteArrayInputStream(src, off, len)), limit);
+        } catch (IOException | DataFormatException ex) {
+            return null;
+        }
+    }
+
+    private static byte[] read(InputStream in, int limit) throws IOException {
+        try (in) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buf = new byte[8192];
+            for (int n; out.size() < limit && (n = in.read(buf, 0, Math.min(buf.length, limit - out.size()))) > 0; ) {
+                out.write(buf, 0, n);
+            }
+            return out.toByteArray();
+        }
+    }
+
+    // "deflate" is meant to be zlib-wrapped, but some servers send a raw deflate stream.
+    private static byte[] inflate(byte[] src, int off, int len, int limit) throws DataFormatException {
+        boolean zlib = len >= 2 && (src[off] & 0x0F) == 8 && (((src[off] & 0xFF) << 8) | (src[off + 1] & 0xFF)) % 31 == 0;
+        Inflater inflater = new Inflater(!zlib);
+        try {
+            inflater.setInput(src, off, len);
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buf = new byte[8192];
+            while (out.size() < limit && !inflater.finished()) {
+                int n = inflater.inflate(buf, 0, Math.min(buf.length, limit - out.size()));
+                if (n == 0 && (inflater.needsInput() || inflater.needsDictionary())) break;
+                out.write(buf, 0, n);
+            }
+            return out.toByteArray();
+        } finally {
+            inflater.end();
+        }
+    }
+}
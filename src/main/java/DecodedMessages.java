@@ -0,0 +1,138 @@
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+import java.util.function.IntConsumer;
+
+// Decoded views of captured messages. A message whose body has a gzip or deflate
+// Content-Encoding is rewritten once with the inflated body, without Content-Encoding and with a
+// matching Content-Length, and the pair is kept in a byte-capped LRU. The wire bytes stay with
+// the capture (ArchiveSource.materializeRaw); messages that are not encoded, use an unsupported
+// coding or do not inflate are passed through as they are. Batches decode on a small bounded pool.
+public final class DecodedMessages {
+    public static final DecodedMessages SHARED = new DecodedMessages(64L * 1024 * 1024);
+
+    private static final int POOL_THREADS = Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors() - 1));
+    private static final AtomicInteger threadIds = new AtomicInteger();
+    private static final ExecutorService POOL = Executors.newFixedThreadPool(POOL_THREADS, r -> {
+        Thread t = new Thread(r, "proxyman-decode-" + threadIds.incrementAndGet());
+        t.setDaemon(true);
+        return t;
+    });
+
+    private final long maxBytes;
+    private final LinkedHashMap<ProxymanParser.ParsedEntry, ProxymanParser.RawMessages> map =
+            new LinkedHashMap<>(64, 0.75f, true);
+    private long bytes;
+    private volatile boolean enabled = true;
+
+    public DecodedMessages(long maxBytes) {
+        this.maxBytes = maxBytes;
+    }
+
+    // Whether the Burp-facing messages (viewer, Repeater, Site Map) are decoded.
+    public boolean isEnabled() { return enabled; }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    // wire with encoded bodies inflated; wire itself when there is nothing to decode.
+    public ProxymanParser.RawMessages view(ProxymanParser.ParsedEntry entry, ProxymanParser.RawMessages wire) {
+        synchronized (this) {
+            ProxymanParser.RawMessages cached = map.get(entry);
+            if (cached != null) return cached;
+        }
+
+        byte[] request = decode(wire.request);
+        byte[] response = wire.response != null ? decode(wire.response) : null;
+        if (request == wire.request && response == wire.response) return wire;
+
+        ProxymanParser.RawMessages decoded = new ProxymanParser.RawMessages(request, response);
+        put(entry, decoded);
+        return decoded;
+    }
+
+    // Runs task(0) .. task(count - 1) on the decode pool and waits for them; tasks not started
+    // once cancelled returns true are skipped.
+    public static void forEach(int count, IntConsumer task, BooleanSupplier cancelled) throws InterruptedException {
+        AtomicInteger next = new AtomicInteger();
+        int workers = Math.min(POOL_THREADS, count);
+        CountDownLatch finished = new CountDownLatch(workers);
+        for (int w = 0; w < workers; w++) {
+            POOL.execute(() -> {
+                try {
+                    for (int i; !cancelled.getAsBoolean() && (i = next.getAndIncrement()) < count; ) task.accept(i);
+                } finally {
+                    finished.countDown();
+                }
+            });
+        }
+        finished.await();
+    }
+
+    public synchronized void evictSource(ArchiveSource source) {
+        Iterator<Map.Entry<ProxymanParser.ParsedEntry, ProxymanParser.RawMessages>> it = map.entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry<ProxymanParser.ParsedEntry, ProxymanParser.RawMessages> e = it.next();
+            if (e.getKey().source != source) continue;
+            bytes -= e.getValue().size();
+            it.remove();
+        }
+    }
+
+    public synchronized void clear() {
+        map.clear();
+        bytes = 0;
+    }
+
+    private synchronized void put(ProxymanParser.ParsedEntry entry, ProxymanParser.RawMessages decoded) {
+        ProxymanParser.RawMessages previous = map.put(entry, decoded);
+        if (previous != null) bytes -= previous.size();
+        bytes += decoded.size();
+
+        Iterator<Map.Entry<ProxymanParser.ParsedEntry, ProxymanParser.RawMessages>> it = map.entrySet().iterator();
+        while (map.size() > 1 && bytes > maxBytes && it.hasNext()) {
+            Map.Entry<ProxymanParser.ParsedEntry, ProxymanParser.RawMessages> eldest = it.next();
+            if (eldest.getKey() == entry) continue;
+            bytes -= eldest.getValue().size();
+            it.remove();
+        }
+    }
+
+    // The message with its body inflated and the framing headers to match, or message itself.
+    static byte[] decode(byte[] message) {
+        int bodyOffset = RawHttp.bodyOffset(message);
+        String coding = RawHttp.headerValue(message, bodyOffset, "Content-Encoding");
+        if (!ContentCoding.isEncoded(coding) || bodyOffset >= message.length) return message;
+
+        byte[] body = ContentCoding.decode(coding, message, bodyOffset, message.length - bodyOffset, ContentCoding.MAX_DECODED);
+        // A body that fills the cap may be cut short; showing it would misrepresent the message.
+        if (body == null || body.length >= ContentCoding.MAX_DECODED) return message;
+
+        // Header lines are copied as they are, except the two that describe the old body.
+        ByteArrayOutputStream out = new ByteArrayOutputStream(bodyOffset + body.length);
+        int headerEnd = bodyOffset - 2;
+        boolean chunked = false;
+        for (int pos = 0; pos < headerEnd; ) {
+            int end = RawHttp.indexOfCrlf(message, pos);
+            if (end < 0 || end > headerEnd) end = headerEnd;
+            boolean drop = pos > 0 && (RawHttp.isHeader(message, pos, end, "Content-Encoding")
+                    || RawHttp.isHeader(message, pos, end, "Content-Length"));
+            chunked |= pos > 0 && RawHttp.isHeader(message, pos, end, "Transfer-Encoding");
+            if (!drop) out.write(message, pos, end + 2 - pos);
+            pos = end + 2;
+        }
+        if (!chunked) out.writeBytes(("Content-Length: " + body.length + "\r\n").getBytes(StandardCharsets.US_ASCII));
+        out.write('\r');
+        out.write('\n');
+        out.write(body, 0, body.length);
+        return out.toByteArray();
+    }
+}
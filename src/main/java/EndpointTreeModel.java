@@ -0,0 +1,203 @@
+import javax.swing.tree.DefaultMutableTreeNode;
+import javax.swing.tree.DefaultTreeModel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+// Host → path-template tree over the imported rows. Path segments that look like ids (numbers,
+// UUIDs, long hex strings) are collapsed into {id}, {uuid} and {hex}, so one endpoint is one
+// node. Every node keeps the rows beneath it, a status-class histogram and the response body
+// sizes, updated as rows are added; selecting a node filters the table by its row list without
+// rescanning the entries. Rows must be added in ascending order. Used on the EDT only.
+public class EndpointTreeModel extends DefaultTreeModel {
+    private static final int MAX_DEPTH = 8;
+    // Beyond this many children, new segments of a node share one {other} child.
+    private static final int MAX_CHILDREN = 256;
+    private static final Pattern UUID = Pattern.compile("[0-9a-fA-F]{8}-[0-9a-fA-F]{4}-[0-9a-fA-F]{4}-[0-9a-fA-F]{4}-[0-9a-fA-F]{12}");
+    private static final Pattern HEX = Pattern.compile("(?=.*[0-9])[0-9a-fA-F]{16,}");
+
+    public static final class Node extends DefaultMutableTreeNode {
+        final String name;
+        private final Map<String, Node> byName = new HashMap<>();
+        private final FilterIndex.IntList rows = new FilterIndex.IntList();
+        // Index 1-5 for 1xx-5xx, 0 for anything else (no response, status 0).
+        private final int[] statusClasses = new int[6];
+        private final FilterIndex.IntList sizes = new FilterIndex.IntList();
+        private long totalBytes;
+        private int[] sortedSizes = new int[0];
+
+        Node(String name) {
+            this.name = name;
+        }
+
+        public int count() { return rows.size; }
+
+        public int statusClass(int hundreds) { return statusClasses[hundreds]; }
+
+        public long totalBytes() { return totalBytes; }
+
+        // p-th percentile (0-100) of the known response body sizes; -1 if none is known.
+        public long percentile(int p) {
+            if (sizes.size == 0) return -1;
+            if (sortedSizes.length != sizes.size) {
+                sortedSizes = sizes.toArray();
+                Arrays.sort(sortedSizes);
+            }
+            return sortedSizes[Math.min(sortedSizes.length - 1, (int) Math.ceil(p / 100.0 * sortedSizes.length) - 1)];
+        }
+
+        public boolean contains(int row) {
+            return Arrays.binarySearch(rows.values, 0, rows.size, row) >= 0;
+        }
+
+        // Rows below limit as a bitmap for the filter.
+        public BitSet rowSet(int limit) {
+            BitSet set = new BitSet(limit);
+            for (int i = 0; i < rows.size && rows.values[i] < limit; i++) set.set(rows.values[i]);
+            return set;
+        }
+
+        public String details() {
+            StringBuilder sb = new StringBuilder("<html><b>").append(escape(name)).append("</b><br>")
+                    .append(String.format(Locale.ROOT, "%,d requests", count())).append("<br>");
+            for (int c = 1; c <= 5; c++) {
+                if (statusClasses[c] > 0) sb.append(c).append("xx ").append(String.format(Locale.ROOT, "%,d", statusClasses[c])).append(" &nbsp;");
+            }
+            if (statusClasses[0] > 0) sb.append("no status ").append(String.format(Locale.ROOT, "%,d", statusClasses[0]));
+            sb.append("<br>");
+            if (sizes.size > 0) {
+                sb.append("Response bodies: ").append(bytes(totalBytes)).append(" total, p50 ")
+                        .append(bytes(percentile(50))).append(", p95 ").append(bytes(percentile(95)));
+                if (sizes.size < count()) sb.append(String.format(Locale.ROOT, " (%,d of %,d sized)", sizes.size, count()));
+            } else {
+                sb.append("Response body sizes unknown");
+            }
+            return sb.append("</html>").toString();
+        }
+
+        @Override
+        public String toString() {
+            int errors = statusClasses[4] + statusClasses[5];
+            return name + "  (" + String.format(Locale.ROOT, "%,d", count())
+                    + (errors > 0 ? String.format(Locale.ROOT, ", %,d errors", errors) : "") + ")";
+        }
+
+        private void add(int row, int status, long size) {
+            rows.add(row);
+            statusClasses[status >= 100 && status < 600 ? status / 100 : 0]++;
+            if (size >= 0) {
+                sizes.add((int) Math.min(Integer.MAX_VALUE, size));
+                totalBytes += size;
+            }
+        }
+    }
+
+    private Node root;
+
+    public EndpointTreeModel() {
+        this(new Node("All hosts"));
+    }
+
+    private EndpointTreeModel(Node root) {
+        super(root);
+        this.root = root;
+    }
+
+    // Adds rows first, first + 1, ... and fires one event per new or changed node.
+    public void addAll(int first, List<ProxymanParser.ParsedEntry> entries) {
+        Map<Node, List<Node>> inserted = new LinkedHashMap<>();
+        Set<Node> changed = new LinkedHashSet<>();
+
+        for (int i = 0; i < entries.size(); i++) {
+            ProxymanParser.ParsedEntry e = entries.get(i);
+            int row = first + i;
+            Node node = root;
+            node.add(row, e.status, e.responseSize);
+            changed.add(node);
+
+            List<String> names = names(e);
+            for (String name : names) {
+                Node child = node.byName.get(name);
+                if (child == null) {
+                    if (node.byName.size() >= MAX_CHILDREN && node != root) name = "{other}";
+                    child = node.byName.get(name);
+                }
+                if (child == null) {
+                    child = new Node(name);
+                    node.byName.put(name, child);
+                    node.add(child);
+                    inserted.computeIfAbsent(node, k -> new ArrayList<>()).add(child);
+                } else {
+                    changed.add(child);
+                }
+                child.add(row, e.status, e.responseSize);
+                node = child;
+            }
+        }
+
+        for (Map.Entry<Node, List<Node>> ins : inserted.entrySet()) {
+            Node parent = ins.getKey();
+            int[] indices = new int[ins.getValue().size()];
+            for (int k = 0; k < indices.length; k++) indices[k] = parent.getIndex(ins.getValue().get(k));
+            nodesWereInserted(parent, indices);
+        }
+        for (Node node : changed) nodeChanged(node);
+    }
+
+    public void clear() {
+        root = new Node(root.name);
+        setRoot(root);
+    }
+
+    // Host, then the collapsed path segments without the query string.
+    static List<String> names(ProxymanParser.ParsedEntry e) {
+        List<String> names = new ArrayList<>();
+        names.add(e.host);
+        String path = e.path;
+        int query = path.indexOf('?');
+        if (query >= 0) path = path.substring(0, query);
+
+        String[] segments = path.split("/");
+        for (String segment : segments) {
+            if (segment.isEmpty()) continue;
+            if (names.size() > MAX_DEPTH) {
+                names.add("…");
+                break;
+            }
+            names.add("/" + template(segment));
+        }
+        return names;
+    }
+
+    static String template(String segment) {
+        if (isNumber(segment)) return "{id}";
+        if (UUID.matcher(segment).matches()) return "{uuid}";
+        if (HEX.matcher(segment).matches()) return "{hex}";
+        return segment;
+    }
+
+    private static boolean isNumber(String s) {
+        for (int i = 0; i < s.length(); i++) {
+            if (!Character.isDigit(s.charAt(i))) return false;
+        }
+        return true;
+    }
+
+    private static String bytes(long n) {
+        if (n < 1024) return n + " B";
+        if (n < 1024 * 1024) return String.format(Locale.ROOT, "%.1f KB", n / 1024.0);
+        return String.format(Locale.ROOT, "%.1f MB", n / (1024.0 * 1024.0));
+    }
+
+    private static String escape(String s) {
+        return s.replace("&", "&amp;").replace("<", "&lt;").replace(">", "&gt;");
+    }
+}
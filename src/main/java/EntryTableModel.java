@@ -0,0 +1,76 @@
+import javax.swing.table.AbstractTableModel;
+import java.util.Arrays;
+import java.util.List;
+
+// Table model that reads columns straight from the imported entries. The visible (filtered)
+// rows are an int[] of indexes into the entry list; every mutation is one batch and fires one
+// model event, regardless of how many rows it touches.
+public class EntryTableModel extends AbstractTableModel {
+    private static final String[] COLUMNS = {"#", "Method", "Host", "Path", "Status", "Source"};
+
+    private final List<ProxymanParser.ParsedEntry> entries;
+    private int[] rowMap = new int[0];
+    private int size;
+
+    public EntryTableModel(List<ProxymanParser.ParsedEntry> entries) {
+        this.entries = entries;
+    }
+
+    @Override public int getRowCount() { return size; }
+
+    @Override public int getColumnCount() { return COLUMNS.length; }
+
+    @Override public String getColumnName(int column) { return COLUMNS[column]; }
+
+    @Override
+    public Class<?> getColumnClass(int column) {
+        return column == 0 || column == 4 ? Integer.class : String.class;
+    }
+
+    @Override
+    public Object getValueAt(int row, int column) {
+        int idx = rowMap[row];
+        ProxymanParser.ParsedEntry e = entries.get(idx);
+        return switch (column) {
+            case 0 -> idx + 1;
+            case 1 -> e.method;
+            case 2 -> e.host;
+            case 3 -> e.path;
+            case 4 -> e.status;
+            case 5 -> e.source.file.getName();
+            default -> null;
+        };
+    }
+
+    // Index into the entry list for a model row.
+    public int entryIndexAt(int row) {
+        return row >= 0 && row < size ? rowMap[row] : -1;
+    }
+
+    public int[] rows() {
+        return Arrays.copyOf(rowMap, size);
+    }
+
+    public void setRows(int[] rows) {
+        rowMap = rows;
+        size = rows.length;
+        fireTableDataChanged();
+    }
+
+    public void appendRows(int[] rows, int count) {
+        if (count == 0) return;
+        if (size + count > rowMap.length) {
+            rowMap = Arrays.copyOf(rowMap, Math.max(size + count, rowMap.length * 2));
+        }
+        System.arraycopy(rows, 0, rowMap, size, count);
+        int first = size;
+        size += count;
+        fireTableRowsInserted(first, size - 1);
+    }
+
+    public void clear() {
+        rowMap = new int[0];
+        size = 0;
+        fireTableDataChanged();
+    }
+}
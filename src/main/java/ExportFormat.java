@@ -0,0 +1,32 @@
+import java.io.IOException;
+import java.util.Locale;
+
+// Output format of the command-line converter. entry() runs on the decode threads and must not
+// keep state between calls; the caller writes header, separators and footer in order around it.
+public interface ExportFormat {
+
+    byte[] header();
+
+    byte[] separator();
+
+    byte[] footer();
+
+    byte[] entry(ProxymanParser.ParsedEntry entry, ProxymanParser.RawMessages raw) throws IOException;
+
+    static ExportFormat forName(String name) {
+        return switch (name.toLowerCase(Locale.ROOT)) {
+            case "raw" -> new RawHttpFormat();
+            case "har" -> new HarFormat();
+            case "xml", "burp" -> new BurpXmlFormat();
+            default -> throw new IllegalArgumentException("Unknown format: " + name + " (expected raw, har or xml)");
+        };
+    }
+
+    // Absolute URL of an entry, with the port only when it is not the scheme's default.
+    static String url(ProxymanParser.ParsedEntry e) {
+        String scheme = e.secure ? "https" : "http";
+        boolean defaultPort = e.port == (e.secure ? 443 : 80);
+        String path = e.path.startsWith("/") ? e.path : "/" + e.path;
+        return scheme + "://" + e.host + (defaultPort ? "" : ":" + e.port) + path;
+    }
+}
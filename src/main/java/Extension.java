@@ -6,6 +6,8 @@ public class Extension implements BurpExtension {
     @Override
     public void initialize(MontoyaApi api) {
         api.extension().setName("Proxyman Log Importer");
-        api.userInterface().registerSuiteTab("Proxyman Log Importer", new MainTab(api));
+        MainTab mainTab = new MainTab(api);
+        api.userInterface().registerSuiteTab("Proxyman Log Importer", mainTab);
+        api.extension().registerUnloadingHandler(mainTab::dispose);
     }
 }
@@ -0,0 +1,200 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.function.BooleanSupplier;
+
+// Searchable columns for the request table, computed once per entry at import time: the row
+// text with a trigram index for plain words, rows by host, and rows by status, whose list sizes
+// double as the status histogram. A query starts from the smallest candidate list any of its
+// terms can name and verifies only those rows, instead of scanning all of them. Rows are
+// append-only until clear().
+public class FilterIndex {
+    private final List<ProxymanParser.ParsedEntry> entries = new ArrayList<>();
+    private final List<String> rows = new ArrayList<>();
+    private final HashMap<Long, IntList> trigrams = new HashMap<>();
+    private final HashMap<String, IntList> byHost = new HashMap<>();
+    private final HashMap<Integer, IntList> byStatus = new HashMap<>();
+
+    // Rows of one search: matched is final, scan still needs the bodies (FilterQuery.testScanned).
+    public static final class Result {
+        public final int[] matched;
+        public final int[] scan;
+
+        Result(int[] matched, int[] scan) {
+            this.matched = matched;
+            this.scan = scan;
+        }
+    }
+
+    public static String rowText(ProxymanParser.ParsedEntry e) {
+        return (e.method + " " + e.host + " " + e.path + " " + e.status).toLowerCase(Locale.ROOT);
+    }
+
+    public synchronized void add(ProxymanParser.ParsedEntry e) {
+        int row = rows.size();
+        String text = rowText(e);
+        entries.add(e);
+        rows.add(text);
+
+        for (int i = 0; i + 3 <= text.length(); i++) {
+            IntList postings = trigrams.computeIfAbsent(trigram(text, i), k -> new IntList());
+            if (postings.size == 0 || postings.last() != row) postings.add(row);
+        }
+        byHost.computeIfAbsent(e.host.toLowerCase(Locale.ROOT), k -> new IntList()).add(row);
+        byStatus.computeIfAbsent(e.status, k -> new IntList()).add(row);
+    }
+
+    public synchronized int size() { return rows.size(); }
+
+    // FilterQuery.NO, YES or SCAN for one row.
+    public synchronized int test(int row, FilterQuery q) {
+        return q.isEmpty() ? FilterQuery.YES : q.test(entries.get(row), rows.get(row));
+    }
+
+    public synchronized ProxymanParser.ParsedEntry entry(int row) {
+        return entries.get(row);
+    }
+
+    public synchronized String text(int row) {
+        return rows.get(row);
+    }
+
+    // Rows below limit, and in within unless that is null, that match q or need a body scan,
+    // each in ascending order; bodies, if given, settles body terms for the rows it has indexed.
+    // Returns null if cancelled.
+    public synchronized Result search(FilterQuery q, int limit, BitSet within, FilterQuery.BodyLookup bodies,
+                                      BooleanSupplier cancelled) {
+        int n = Math.min(limit, rows.size());
+        if (q.isEmpty()) {
+            if (within != null) return new Result(within.get(0, n).stream().toArray(), new int[0]);
+            int[] all = new int[n];
+            for (int i = 0; i < n; i++) all[i] = i;
+            return new Result(all, new int[0]);
+        }
+
+        int[] candidates = candidates(q, n);
+        if (within != null) candidates = restrict(candidates, within, n);
+        IntList matched = new IntList();
+        IntList scan = new IntList();
+        int count = candidates != null ? candidates.length : n;
+        for (int k = 0; k < count; k++) {
+            if ((k & 0xFFF) == 0 && cancelled.getAsBoolean()) return null;
+            int row = candidates != null ? candidates[k] : k;
+            int r = q.test(entries.get(row), rows.get(row), row, bodies);
+            if (r == FilterQuery.YES) matched.add(row);
+            else if (r == FilterQuery.SCAN) scan.add(row);
+        }
+        return new Result(matched.toArray(), scan.toArray());
+    }
+
+    public synchronized void clear() {
+        entries.clear();
+        rows.clear();
+        trigrams.clear();
+        byHost.clear();
+        byStatus.clear();
+    }
+
+    // Smallest ascending candidate list below n that some positive term restricts the query to,
+    // or null when no term can use an index.
+    private int[] candidates(FilterQuery q, int n) {
+        List<IntList> best = null;
+        long bestCount = Long.MAX_VALUE;
+        for (FilterQuery.Term t : q.terms) {
+            if (t.negated) continue;
+            List<IntList> lists = switch (t.field) {
+                case TEXT -> textPostings(t.text);
+                case HOST -> hostPostings(t);
+                case STATUS -> statusPostings(t);
+                default -> null;
+            };
+            if (lists == null) continue;
+
+            long count = 0;
+            for (IntList l : lists) count += l.size;
+            if (count < bestCount) {
+                best = lists;
+                bestCount = count;
+            }
+        }
+        if (best == null) return null;
+        if (best.size() == 1) return best.get(0).toArray(n);
+
+        // Several lists (a host glob, a status range): merge through a bitmap to keep row order.
+        BitSet rows = new BitSet(n);
+        for (IntList l : best) {
+            for (int i = 0; i < l.size && l.values[i] < n; i++) rows.set(l.values[i]);
+        }
+        return rows.stream().toArray();
+    }
+
+    private static int[] restrict(int[] candidates, BitSet within, int n) {
+        if (candidates == null) return within.get(0, n).stream().toArray();
+        int[] kept = new int[candidates.length];
+        int k = 0;
+        for (int row : candidates) {
+            if (within.get(row)) kept[k++] = row;
+        }
+        return Arrays.copyOf(kept, k);
+    }
+
+    private List<IntList> textPostings(String text) {
+        if (text.length() < 3) return null;
+        IntList smallest = null;
+        for (int i = 0; i + 3 <= text.length(); i++) {
+            IntList postings = trigrams.get(trigram(text, i));
+            if (postings == null) return List.of();
+            if (smallest == null || postings.size < smallest.size) smallest = postings;
+        }
+        return List.of(smallest);
+    }
+
+    private List<IntList> hostPostings(FilterQuery.Term t) {
+        if (t.op == FilterQuery.Op.EQ && t.glob == null) {
+            IntList rows = byHost.get(t.text);
+            return rows != null ? List.of(rows) : List.of();
+        }
+        List<IntList> lists = new ArrayList<>();
+        for (Map.Entry<String, IntList> e : byHost.entrySet()) {
+            if (FilterQuery.matches(t, e.getKey())) lists.add(e.getValue());
+        }
+        return lists;
+    }
+
+    private List<IntList> statusPostings(FilterQuery.Term t) {
+        List<IntList> lists = new ArrayList<>();
+        for (Map.Entry<Integer, IntList> e : byStatus.entrySet()) {
+            if (FilterQuery.inRange(t, e.getKey())) lists.add(e.getValue());
+        }
+        return lists;
+    }
+
+    private static long trigram(String s, int i) {
+        return (long) s.charAt(i) << 32 | (long) s.charAt(i + 1) << 16 | s.charAt(i + 2);
+    }
+
+    static final class IntList {
+        int[] values = new int[4];
+        int size;
+
+        void add(int v) {
+            if (size == values.length) values = Arrays.copyOf(values, size * 2);
+            values[size++] = v;
+        }
+
+        int last() { return values[size - 1]; }
+
+        int[] toArray() { return Arrays.copyOf(values, size); }
+
+        // Values below limit; the list is ascending.
+        int[] toArray(int limit) {
+            int end = size;
+            while (end > 0 && values[end - 1] >= limit) end--;
+            return Arrays.copyOf(values, end);
+        }
+    }
+}
@@ -0,0 +1,343 @@
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.regex.Pattern;
+
+// Compiled filter expression for the request table. Terms are separated by spaces and must all
+// match; a leading '-' negates one:
+//
+//   status>=500  status:5xx  status:200-299  host:*.api.example.com  method:POST  path:/v1/*
+//   type:json  size>10000  time>=500  source:run1.har  host~cdn  body~"token"  -status:404
+//
+// ':' and '=' compare whole values (case-insensitive, '*' globs), '!=' negates that, '~' matches
+// a substring, and <, <=, >, >= compare numbers. Plain words, and terms naming no known field,
+// match the "method host path status" row text as the filter always did. All columns except the
+// bodies are precomputed on ParsedEntry; body~, and size on entries whose size the capture did
+// not declare, need the messages and are settled by a background scan (testScanned).
+public final class FilterQuery {
+    public static final FilterQuery EMPTY = new FilterQuery(List.of());
+
+    // Outcomes of testing the precomputed columns.
+    public static final int NO = 0;
+    public static final int YES = 1;
+    public static final int SCAN = 2;
+
+    enum Field { TEXT, STATUS, HOST, METHOD, PATH, TYPE, SIZE, TIME, SOURCE, BODY }
+
+    enum Op { EQ, NE, CONTAINS, LT, LE, GT, GE }
+
+    static final class Term {
+        final Field field;
+        final Op op;
+        final boolean negated;
+        final String text;
+        final Pattern glob;
+        final long min;
+        final long max;
+        final byte[] needle;
+
+        Term(Field field, Op op, boolean negated, String text, Pattern glob, long min, long max, byte[] needle) {
+            this.field = field;
+            this.op = op;
+            this.negated = negated;
+            this.text = text;
+            this.glob = glob;
+            this.min = min;
+            this.max = max;
+            this.needle = needle;
+        }
+    }
+
+    // Answers a body term for one row from an index: YES, NO, or SCAN when it cannot tell.
+    public interface BodyLookup {
+        int contains(Term t, int row);
+    }
+
+    final List<Term> terms;
+
+    private FilterQuery(List<Term> terms) {
+        this.terms = terms;
+    }
+
+    public boolean isEmpty() { return terms.isEmpty(); }
+
+    // Text of the first body~ term, for highlighting in the message editors; null if none.
+    public String bodyText() {
+        for (Term t : terms) {
+            if (t.field == Field.BODY && !t.negated) return t.text;
+        }
+        return null;
+    }
+
+    // Throws IllegalArgumentException, with a message for the UI, on a malformed value of a
+    // known field (e.g. "status>=abc").
+    public static FilterQuery parse(String query) {
+        List<Term> terms = new ArrayList<>();
+        for (String token : tokenize(query == null ? "" : query)) terms.add(term(token));
+        return terms.isEmpty() ? EMPTY : new FilterQuery(terms);
+    }
+
+    // NO, YES or SCAN for the entry's precomputed columns; rowText is FilterIndex.rowText(e).
+    public int test(ProxymanParser.ParsedEntry e, String rowText) {
+        return test(e, rowText, -1, null);
+    }
+
+    // As above, with body terms answered by bodies where it can for the entry's row.
+    public int test(ProxymanParser.ParsedEntry e, String rowText, int row, BodyLookup bodies) {
+        int result = YES;
+        for (Term t : terms) {
+            int r = test(t, e, rowText, row, bodies);
+            if (r == NO) return NO;
+            if (r == SCAN) result = SCAN;
+        }
+        return result;
+    }
+
+    // Final answer for an entry test() returned SCAN for, given its messages as captured (wire)
+    // and with their bodies decoded (DecodedMessages). Sizes are wire sizes; bodies are searched
+    // decoded.
+    public boolean testScanned(ProxymanParser.ParsedEntry e, String rowText, ProxymanParser.RawMessages wire,
+                               ProxymanParser.RawMessages decoded) {
+        int requestBody = RawHttp.bodyOffset(decoded.request);
+        int responseBody = decoded.response != null ? RawHttp.bodyOffset(decoded.response) : 0;
+        for (Term t : terms) {
+            boolean match;
+            if (t.field == Field.BODY) {
+                match = indexOfIgnoreCase(decoded.request, requestBody, t.needle) >= 0
+                        || decoded.response != null && indexOfIgnoreCase(decoded.response, responseBody, t.needle) >= 0;
+            } else if (t.field == Field.SIZE && e.responseSize < 0) {
+                match = inRange(t, wire.response != null ? wire.response.length - RawHttp.bodyOffset(wire.response) : 0);
+            } else {
+                if (test(t, e, rowText, -1, null) != YES) return false;
+                continue;
+            }
+            if (match == t.negated) return false;
+        }
+        return true;
+    }
+
+    private static int test(Term t, ProxymanParser.ParsedEntry e, String rowText, int row, BodyLookup bodies) {
+        boolean match;
+        switch (t.field) {
+            case TEXT -> match = rowText.contains(t.text);
+            case STATUS -> match = inRange(t, e.status);
+            case SIZE -> {
+                if (e.responseSize < 0) return SCAN;
+                match = inRange(t, e.responseSize);
+            }
+            // Unknown durations never match, negated or not.
+            case TIME -> {
+                if (e.durationMillis < 0) return NO;
+                match = inRange(t, e.durationMillis);
+            }
+            case HOST -> match = matches(t, e.host);
+            case METHOD -> match = matches(t, e.method);
+            case PATH -> match = matches(t, e.path);
+            case TYPE -> match = matchesType(t, e.contentType);
+            case SOURCE -> match = matches(t, e.source.file.getName());
+            case BODY -> {
+                int r = bodies != null ? bodies.contains(t, row) : SCAN;
+                if (r == SCAN) return SCAN;
+                match = r == YES;
+            }
+            default -> throw new IllegalStateException(t.field.name());
+        }
+        return match != t.negated ? YES : NO;
+    }
+
+    static boolean inRange(Term t, long value) {
+        return value >= t.min && value <= t.max;
+    }
+
+    // String comparison for host/method/path/type/source terms, case-insensitive.
+    static boolean matches(Term t, String value) {
+        if (t.op == Op.CONTAINS) return containsIgnoreCase(value, t.text);
+        if (t.glob != null) return t.glob.matcher(value).matches();
+        return value.equalsIgnoreCase(t.text);
+    }
+
+    // A type without a '/' names the subtype or its suffix: type:json matches application/json
+    // and application/problem+json.
+    private static boolean matchesType(Term t, String mimeType) {
+        if (matches(t, mimeType)) return true;
+        if (t.op == Op.CONTAINS || t.text.indexOf('/') >= 0) return false;
+        int slash = mimeType.indexOf('/');
+        if (slash < 0) return false;
+        String subtype = mimeType.substring(slash + 1);
+        int plus = subtype.lastIndexOf('+');
+        return matches(t, subtype) || plus >= 0 && matches(t, subtype.substring(plus + 1));
+    }
+
+    private static Term term(String token) {
+        boolean negated = token.length() > 1 && token.charAt(0) == '-';
+        String body = negated ? token.substring(1) : token;
+
+        int opAt = -1;
+        for (int i = 0; i < body.length() && opAt < 0; i++) {
+            char c = body.charAt(i);
+            if (c == ':' || c == '=' || c == '~' || c == '<' || c == '>' || c == '!' && i + 1 < body.length() && body.charAt(i + 1) == '=') opAt = i;
+            else if (!Character.isLetter(c) && c != '-') break;
+        }
+        Field field = opAt > 0 ? field(body.substring(0, opAt)) : null;
+        if (field == null) return text(negated, unquote(body));
+
+        Op op;
+        int valueAt;
+        char c = body.charAt(opAt);
+        boolean equalsNext = opAt + 1 < body.length() && body.charAt(opAt + 1) == '=';
+        switch (c) {
+            case '~' -> { op = Op.CONTAINS; valueAt = opAt + 1; }
+            case '!' -> { op = Op.NE; valueAt = opAt + 2; }
+            case '<' -> { op = equalsNext ? Op.LE : Op.LT; valueAt = opAt + (equalsNext ? 2 : 1); }
+            case '>' -> { op = equalsNext ? Op.GE : Op.GT; valueAt = opAt + (equalsNext ? 2 : 1); }
+            default -> { op = Op.EQ; valueAt = opAt + 1; }
+        }
+        String value = unquote(body.substring(valueAt));
+        if (op == Op.NE) {
+            op = Op.EQ;
+            negated = !negated;
+        }
+
+        if (field == Field.BODY) {
+            if (op != Op.CONTAINS && op != Op.EQ) throw new IllegalArgumentException("body takes ~\"text\"");
+            if (value.isEmpty()) throw new IllegalArgumentException("body~ needs some text");
+            // Folded byte by byte like the scanner and BodyIndex: ASCII only, so "Ärger" stays "Ärger".
+            byte[] needle = value.getBytes(StandardCharsets.UTF_8);
+            for (int i = 0; i < needle.length; i++) needle[i] = lower(needle[i]);
+            return new Term(field, Op.CONTAINS, negated, value, null, 0, 0, needle);
+        }
+        if (field == Field.STATUS || field == Field.SIZE || field == Field.TIME) return numeric(field, op, negated, value);
+
+        if (op != Op.EQ && op != Op.CONTAINS) throw new IllegalArgumentException(name(field) + " takes :, != or ~");
+        Pattern glob = op == Op.EQ && value.indexOf('*') >= 0 ? glob(value) : null;
+        return new Term(field, op, negated, value.toLowerCase(Locale.ROOT), glob, 0, 0, null);
+    }
+
+    private static Term numeric(Field field, Op op, boolean negated, String value) {
+        String v = value.toLowerCase(Locale.ROOT);
+        long min, max;
+        try {
+            if (op == Op.EQ && field == Field.STATUS && v.length() == 3 && v.endsWith("xx") && Character.isDigit(v.charAt(0))) {
+                min = (v.charAt(0) - '0') * 100L;
+                max = min + 99;
+            } else if (op == Op.EQ && v.indexOf('-') > 0) {
+                int dash = v.indexOf('-');
+                min = number(field, v.substring(0, dash));
+                max = number(field, v.substring(dash + 1));
+            } else {
+                long n = number(field, v);
+                switch (op) {
+                    case LT -> { min = Long.MIN_VALUE; max = n - 1; }
+                    case LE -> { min = Long.MIN_VALUE; max = n; }
+                    case GT -> { min = n + 1; max = Long.MAX_VALUE; }
+                    case GE -> { min = n; max = Long.MAX_VALUE; }
+                    case EQ -> { min = n; max = n; }
+                    default -> throw new IllegalArgumentException(name(field) + " takes =, <, <=, > or >=");
+                }
+            }
+        } catch (NumberFormatException ex) {
+            throw new IllegalArgumentException(name(field) + " needs a number, not \"" + value + "\"");
+        }
+        return new Term(field, op, negated, v, null, min, max, null);
+    }
+
+    // Sizes accept k/m suffixes (10k = 10240); times are in milliseconds.
+    private static long number(Field field, String v) {
+        long scale = 1;
+        if (field == Field.SIZE && !v.isEmpty()) {
+            char unit = v.charAt(v.length() - 1);
+            if (unit == 'k') scale = 1024;
+            else if (unit == 'm') scale = 1024 * 1024;
+            if (scale > 1) v = v.substring(0, v.length() - 1);
+        }
+        if (field == Field.TIME && v.endsWith("ms")) v = v.substring(0, v.length() - 2);
+        return Long.parseLong(v.trim()) * scale;
+    }
+
+    private static Term text(boolean negated, String value) {
+        return new Term(Field.TEXT, Op.CONTAINS, negated, value.toLowerCase(Locale.ROOT), null, 0, 0, null);
+    }
+
+    private static Field field(String name) {
+        return switch (name.toLowerCase(Locale.ROOT)) {
+            case "status", "code" -> Field.STATUS;
+            case "host" -> Field.HOST;
+            case "method" -> Field.METHOD;
+            case "path", "url" -> Field.PATH;
+            case "type", "mime", "content-type" -> Field.TYPE;
+            case "size" -> Field.SIZE;
+            case "time", "duration" -> Field.TIME;
+            case "source", "file" -> Field.SOURCE;
+            case "body" -> Field.BODY;
+            default -> null;
+        };
+    }
+
+    private static String name(Field field) {
+        return field.name().toLowerCase(Locale.ROOT);
+    }
+
+    static Pattern glob(String value) {
+        StringBuilder regex = new StringBuilder();
+        int start = 0;
+        for (int star = value.indexOf('*'); star >= 0; star = value.indexOf('*', start)) {
+            if (star > start) regex.append(Pattern.quote(value.substring(start, star)));
+            regex.append(".*");
+            start = star + 1;
+        }
+        if (start < value.length()) regex.append(Pattern.quote(value.substring(start)));
+        return Pattern.compile(regex.toString(), Pattern.CASE_INSENSITIVE | Pattern.UNICODE_CASE | Pattern.DOTALL);
+    }
+
+    // Splits on whitespace outside double quotes; quotes stay on the token for unquote().
+    private static List<String> tokenize(String query) {
+        List<String> tokens = new ArrayList<>();
+        StringBuilder current = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < query.length(); i++) {
+            char c = query.charAt(i);
+            if (c == '"') quoted = !quoted;
+            if (Character.isWhitespace(c) && !quoted) {
+                if (current.length() > 0) tokens.add(current.toString());
+                current.setLength(0);
+            } else {
+                current.append(c);
+            }
+        }
+        if (current.length() > 0) tokens.add(current.toString());
+        return tokens;
+    }
+
+    private static String unquote(String s) {
+        if (s.length() >= 2 && s.charAt(0) == '"' && s.charAt(s.length() - 1) == '"') return s.substring(1, s.length() - 1);
+        if (s.length() == 1 && s.charAt(0) == '"') return "";
+        return s.indexOf('"') >= 0 ? s.replace("\"", "") : s;
+    }
+
+    private static boolean containsIgnoreCase(String haystack, String lowerNeedle) {
+        int n = lowerNeedle.length();
+        for (int i = 0; i + n <= haystack.length(); i++) {
+            if (haystack.regionMatches(true, i, lowerNeedle, 0, n)) return true;
+        }
+        return false;
+    }
+
+    // First index of lowerNeedle in bytes at or after from, ignoring ASCII case; -1 if absent.
+    static int indexOfIgnoreCase(byte[] bytes, int from, byte[] lowerNeedle) {
+        int n = lowerNeedle.length;
+        byte first = lowerNeedle[0];
+        for (int i = from, last = bytes.length - n; i <= last; i++) {
+            if (lower(bytes[i]) != first) continue;
+            int k = 1;
+            while (k < n && lower(bytes[i + k]) == lowerNeedle[k]) k++;
+            if (k == n) return i;
+        }
+        return -1;
+    }
+
+    // The one case folding of body searches, shared with BodyIndex.
+    static byte lower(byte b) {
+        return b >= 'A' && b <= 'Z' ? (byte) (b + 32) : b;
+    }
+}
@@ -0,0 +1,175 @@
+import javax.swing.*;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+// Background HAR export of imported entries. Entries are rebuilt from their archives on a few
+// threads and streamed to disk in table order through HarWriter; at most threads *
+// IN_FLIGHT_PER_THREAD rebuilt entries are held at once, so heap use does not grow with the
+// export. A cancelled export still ends the document, leaving a valid HAR of what was written.
+public class HarExportJob extends SwingWorker<HarExportJob.Progress, HarExportJob.Progress> {
+    private static final int IN_FLIGHT_PER_THREAD = 4;
+    private static final long PUBLISH_INTERVAL_NANOS = 100_000_000L;
+
+    public interface Listener {
+        void onProgress(Progress progress);
+
+        void onDone(Progress result, Exception error);
+    }
+
+    public static class Progress {
+        public final int total;
+        public final int exported;
+        public final int failed;
+        public final long bytes;
+        public final long nanos;
+        public final boolean cancelled;
+
+        Progress(int total, int exported, int failed, long bytes, long nanos, boolean cancelled) {
+            this.total = total;
+            this.exported = exported;
+            this.failed = failed;
+            this.bytes = bytes;
+            this.nanos = nanos;
+            this.cancelled = cancelled;
+        }
+
+        public int done() { return exported + failed; }
+
+        public double megabytesPerSecond() { return nanos > 0 ? bytes / (nanos / 1e9) / (1 << 20) : 0; }
+
+        public double entriesPerSecond() { return nanos > 0 ? exported / (nanos / 1e9) : 0; }
+    }
+
+    private final File file;
+    private final List<ProxymanParser.ParsedEntry> entries;
+    private final int[] indexes;
+    private final int threads;
+    private final Listener listener;
+    private final Consumer<String> errorLog;
+
+    private volatile int exported;
+    private volatile int failed;
+    private volatile long bytes;
+    private volatile long startNanos;
+
+    public HarExportJob(File file, List<ProxymanParser.ParsedEntry> entries, int[] indexes, int threads,
+                        Listener listener, Consumer<String> errorLog) {
+        this.file = file;
+        this.entries = entries;
+        this.indexes = indexes;
+        this.threads = Math.max(1, threads);
+        this.listener = listener;
+        this.errorLog = errorLog;
+    }
+
+    @Override
+    protected Progress doInBackground() throws Exception {
+        startNanos = System.nanoTime();
+        long lastPublish = startNanos;
+
+        AtomicInteger threadIds = new AtomicInteger();
+        ExecutorService pool = Executors.newFixedThreadPool(threads, r -> {
+            Thread t = new Thread(r, "proxyman-har-" + threadIds.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+
+        ArrayDeque<Future<ProxymanParser.RawMessages>> window = new ArrayDeque<>();
+        CountingOutputStream counter = new CountingOutputStream(new FileOutputStream(file));
+        try (HarWriter har = new HarWriter(new BufferedWriter(new OutputStreamWriter(counter, StandardCharsets.UTF_8), 1 << 16))) {
+            har.begin();
+
+            int submitted = 0;
+            for (int k = 0; k < indexes.length && !isCancelled(); k++) {
+                while (submitted < indexes.length && window.size() < threads * IN_FLIGHT_PER_THREAD) {
+                    ProxymanParser.ParsedEntry pe = entries.get(indexes[submitted++]);
+                    window.add(pool.submit(() -> pe.source.materializeRaw(pe)));
+                }
+
+                ProxymanParser.ParsedEntry pe = entries.get(indexes[k]);
+                ProxymanParser.RawMessages raw;
+                try {
+                    raw = window.poll().get();
+                } catch (ExecutionException ex) {
+                    // An entry that can no longer be rebuilt is left out; write errors still abort.
+                    failed++;
+                    errorLog.accept("HAR export failed at item " + (indexes[k] + 1) + ": " + ex.getCause().getMessage());
+                    continue;
+                }
+
+                har.writeEntry(pe, raw);
+                exported++;
+                bytes = counter.count;
+
+                long now = System.nanoTime();
+                if (now - lastPublish >= PUBLISH_INTERVAL_NANOS) {
+                    lastPublish = now;
+                    publish(snapshot(false));
+                }
+            }
+
+            har.end();
+        } finally {
+            for (Future<ProxymanParser.RawMessages> f : window) f.cancel(true);
+            pool.shutdownNow();
+        }
+        bytes = counter.count;
+        return snapshot(isCancelled());
+    }
+
+    @Override
+    protected void process(List<Progress> chunks) {
+        listener.onProgress(chunks.get(chunks.size() - 1));
+    }
+
+    @Override
+    protected void done() {
+        Exception error = null;
+        if (!isCancelled()) {
+            try {
+                get();
+            } catch (ExecutionException ex) {
+                error = ex.getCause() instanceof Exception cause ? cause : ex;
+            } catch (Exception ex) {
+                error = ex;
+            }
+        }
+        listener.onDone(snapshot(isCancelled()), error);
+    }
+
+    private Progress snapshot(boolean cancelled) {
+        return new Progress(indexes.length, exported, failed, bytes, System.nanoTime() - startNanos, cancelled);
+    }
+
+    private static final class CountingOutputStream extends FilterOutputStream {
+        volatile long count;
+
+        CountingOutputStream(OutputStream out) { super(out); }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            count += len;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            count++;
+        }
+    }
+}
@@ -0,0 +1,35 @@
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+
+// HAR 1.2 for the command-line converter. Entries are rendered one at a time by HarWriter and
+// spliced between the log header and footer by the caller.
+public class HarFormat implements ExportFormat {
+
+    @Override
+    public byte[] header() {
+        try {
+            StringWriter out = new StringWriter();
+            HarWriter har = new HarWriter(out);
+            // JsonWriter writes through unbuffered, and the log is deliberately left open here.
+            har.begin();
+            return out.toString().getBytes(StandardCharsets.UTF_8);
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    @Override public byte[] separator() { return ",\n".getBytes(StandardCharsets.UTF_8); }
+
+    @Override public byte[] footer() { return "]}}\n".getBytes(StandardCharsets.UTF_8); }
+
+    @Override
+    public byte[] entry(ProxymanParser.ParsedEntry e, ProxymanParser.RawMessages raw) throws IOException {
+        StringWriter out = new StringWriter((int) Math.min(1 << 20, raw.size() + 512));
+        HarWriter har = new HarWriter(out);
+        har.writeEntry(e, raw);
+        har.close();
+        return out.toString().getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,637 @@
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.List;
+import java.util.Locale;
+import java.util.zip.CRC32;
+
+// HAR 1.2 captures (browser dev tools, Charles, Fiddler, this extension's own export). A byte
+// scanner walks the file once and cuts out each element of log.entries, so memory is bounded
+// by the largest single entry however long the array is. Each element is decoded with
+// JsonReader as it is cut out; its byte offset is kept as ParsedEntry.offset and bodies are
+// re-read from there on demand. HAR bodies are normally stored decoded, so Transfer-Encoding
+// and Content-Length are dropped and recomputed, and Content-Encoding is kept only when the
+// body still starts with that encoding's magic bytes.
+public class HarParser implements CaptureParser {
+    public static final HarParser INSTANCE = new HarParser();
+
+    private static final int READ_BUFFER = 1 << 16;
+    private static final int DIGEST_BYTES = 1 << 16;
+
+    private interface ElementVisitor {
+        // Returns false to stop the scan.
+        boolean visit(long offset, byte[] bytes, int length, long fileSize) throws Exception;
+    }
+
+    private static final class HarMessage {
+        String method = "";
+        String url = "";
+        String version = "";
+        int status;
+        String statusText;
+        final List<String[]> headers = new ArrayList<>();
+        byte[] body;
+        String mimeType = "";
+        // content.size is the decoded length, bodySize the bytes on the wire; -1 when absent.
+        long size = -1;
+        long bodySize = -1;
+    }
+
+    private static final class HarEntry {
+        HarMessage request;
+        HarMessage response;
+        long time = -1;
+    }
+
+    @Override public String name() { return "HAR"; }
+
+    @Override public String extension() { return ".har"; }
+
+    @Override
+    public boolean accepts(String fileName, byte[] head) {
+        if (fileName.endsWith(extension())) return true;
+        int i = 0;
+        if (head.length >= 3 && (head[0] & 0xff) == 0xEF && (head[1] & 0xff) == 0xBB && (head[2] & 0xff) == 0xBF) i = 3;
+        while (i < head.length && Character.isWhitespace(head[i])) i++;
+        return i < head.length && head[i] == '{'
+                && new String(head, i, head.length - i, StandardCharsets.ISO_8859_1).contains("\"log\"");
+    }
+
+    @Override
+    public Closeable open(File file) throws IOException {
+        return FileChannel.open(file.toPath(), StandardOpenOption.READ);
+    }
+
+    // Head and tail of the file; together with size and mtime in the cache key this catches
+    // any rewrite of the capture without hashing all of it.
+    @Override
+    public byte[] digest(File file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            long size = channel.size();
+            ByteBuffer buf = ByteBuffer.allocate((int) Math.min(DIGEST_BYTES, size));
+            readFully(channel, buf, 0);
+            digest.update(buf.flip());
+            buf.clear();
+            readFully(channel, buf, Math.max(0, size - buf.capacity()));
+            digest.update(buf.flip());
+            return digest.digest();
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    @Override
+    public void parse(ArchiveSource source, int threads, ProxymanParser.EntryListener listener) throws Exception {
+        ImportStats stats = source.stats;
+        int[] count = {0};
+        try {
+            scan(channel(source), (offset, bytes, length, fileSize) -> {
+                if (listener.isCancelled()) return false;
+                int ordinal = count[0]++;
+                ProxymanParser.ParsedEntry pe = decodeEntry(source, ordinal, offset, bytes, length);
+                if (pe != null) listener.onEntry(pe);
+                listener.onProgress(count[0], estimateTotal(count[0], offset + length, fileSize));
+                return true;
+            });
+        } finally {
+            stats.fileParsed(count[0]);
+        }
+        listener.onProgress(count[0], count[0]);
+    }
+
+    @Override
+    public <T> void convert(ArchiveSource source, int threads, ProxymanParser.EntryConverter<T> converter,
+                            ProxymanParser.ConvertedSink<T> sink) throws Exception {
+        ImportStats stats = source.stats;
+        int[] count = {0};
+        try {
+            scan(channel(source), (offset, bytes, length, fileSize) -> {
+                int ordinal = count[0]++;
+                T converted = convertEntry(source, ordinal, offset, bytes, length, converter);
+                if (converted != null) sink.accept(converted);
+                return true;
+            });
+        } finally {
+            stats.fileParsed(count[0]);
+        }
+    }
+
+    @Override
+    public ProxymanParser.RawMessages materializeRaw(ArchiveSource source, ProxymanParser.ParsedEntry entry,
+                                                     ImportStats stats) throws Exception {
+        long t0 = System.nanoTime();
+        HarEntry he;
+        try (Reader reader = new InputStreamReader(new PositionalInputStream(channel(source), entry.offset), StandardCharsets.UTF_8)) {
+            he = readEntry(reader, true);
+        } finally {
+            stats.add(ImportStats.Phase.JSON, System.nanoTime() - t0);
+        }
+        if (he == null || he.request == null) {
+            throw new IllegalStateException("Entry " + entry.entryName + " no longer in " + entry.source.file.getName());
+        }
+        return buildRaw(entry, he, stats);
+    }
+
+    private static FileChannel channel(ArchiveSource source) throws IOException {
+        return (FileChannel) source.handle();
+    }
+
+    // The array length is unknown until the scan ends; extrapolate it from the bytes consumed.
+    private static int estimateTotal(int done, long position, long fileSize) {
+        if (position <= 0) return done;
+        return (int) Math.min(Integer.MAX_VALUE, Math.max(done, done * fileSize / position));
+    }
+
+    // A malformed entry is counted in the stats and skipped, as for Proxyman archives.
+    private static ProxymanParser.ParsedEntry decodeEntry(ArchiveSource source, int ordinal, long offset,
+                                                          byte[] bytes, int length) {
+        ImportStats stats = source.stats;
+        String name = entryName(ordinal);
+        long t0 = System.nanoTime();
+        try {
+            HarEntry he = readEntry(new InputStreamReader(new ByteArrayInputStream(bytes, 0, length), StandardCharsets.UTF_8), false);
+            if (he == null || he.request == null) {
+                stats.entrySkipped();
+                return null;
+            }
+            return toParsed(source, name, offset, he, bytes, length);
+        } catch (Exception ex) {
+            stats.entryFailed(name, ex);
+            return null;
+        } finally {
+            stats.add(ImportStats.Phase.JSON, System.nanoTime() - t0);
+        }
+    }
+
+    private static <T> T convertEntry(ArchiveSource source, int ordinal, long offset, byte[] bytes, int length,
+                                      ProxymanParser.EntryConverter<T> converter) {
+        ImportStats stats = source.stats;
+        String name = entryName(ordinal);
+        try {
+            long t0 = System.nanoTime();
+            HarEntry he = readEntry(new InputStreamReader(new ByteArrayInputStream(bytes, 0, length), StandardCharsets.UTF_8), true);
+            stats.add(ImportStats.Phase.JSON, System.nanoTime() - t0);
+            if (he == null || he.request == null) {
+                stats.entrySkipped();
+                return null;
+            }
+            ProxymanParser.ParsedEntry pe = toParsed(source, name, offset, he, bytes, length);
+            return converter.convert(pe, buildRaw(pe, he, stats));
+        } catch (Exception ex) {
+            stats.entryFailed(name, ex);
+            return null;
+        }
+    }
+
+    private static String entryName(int ordinal) {
+        return "entries[" + ordinal + "]";
+    }
+
+    private static ProxymanParser.ParsedEntry toParsed(ArchiveSource source, String name, long offset, HarEntry he,
+                                                       byte[] bytes, int length) {
+        HarMessage req = he.request;
+        String method = req.method.isEmpty() ? "GET" : req.method;
+
+        String url = req.url;
+        boolean secure = url.regionMatches(true, 0, "https:", 0, 6) || url.regionMatches(true, 0, "wss:", 0, 4);
+        String host = "";
+        int port = -1;
+        String path = url;
+
+        int schemeEnd = url.indexOf("://");
+        if (schemeEnd > 0) {
+            int authorityStart = schemeEnd + 3;
+            int authorityEnd = authorityStart;
+            while (authorityEnd < url.length() && "/?#".indexOf(url.charAt(authorityEnd)) < 0) authorityEnd++;
+            String authority = url.substring(authorityStart, authorityEnd);
+            authority = authority.substring(authority.lastIndexOf('@') + 1);
+
+            int colon = authority.lastIndexOf(':');
+            if (colon > authority.lastIndexOf(']')) {
+                try {
+                    port = Integer.parseInt(authority.substring(colon + 1));
+                } catch (NumberFormatException ignored) {}
+                authority = authority.substring(0, colon);
+            }
+            host = authority;
+            path = url.substring(authorityEnd);
+        }
+        if (host.isEmpty()) host = headerValue(req, "Host", ":authority");
+        if (port < 0) port = secure ? 443 : 80;
+
+        int fragment = path.indexOf('#');
+        if (fragment >= 0) path = path.substring(0, fragment);
+        if (path.isEmpty()) path = "/";
+        else if (path.charAt(0) == '?') path = "/" + path;
+
+        int status = he.response != null ? he.response.status : 0;
+        String contentType = "";
+        long responseSize = 0;
+        if (he.response != null) {
+            contentType = ProxymanParser.ParsedEntry.mimeType(he.response.mimeType.isEmpty()
+                    ? headerValue(he.response, "Content-Type") : he.response.mimeType);
+            responseSize = he.response.bodySize >= 0 ? he.response.bodySize : he.response.size;
+        }
+
+        CRC32 crc = new CRC32();
+        crc.update(bytes, 0, length);
+        long fp = ProxymanParser.fingerprint(crc.getValue(), length, method, host, port, path, status);
+        return new ProxymanParser.ParsedEntry(source, name, offset, host, port, secure, method, path, status, fp,
+                HeaderDictionary.SHARED.intern(contentType), responseSize, he.time);
+    }
+
+    private static String headerValue(HarMessage message, String... names) {
+        for (String[] h : message.headers) {
+            for (String n : names) {
+                if (h[0].equalsIgnoreCase(n)) return h[1];
+            }
+        }
+        return "";
+    }
+
+    private static ProxymanParser.RawMessages buildRaw(ProxymanParser.ParsedEntry pe, HarEntry he, ImportStats stats) {
+        long t0 = System.nanoTime();
+
+        HttpMessageBuilder requestBuilder = new HttpMessageBuilder().startLine(pe.method, pe.path, httpVersion(he.request.version));
+        addHeaders(requestBuilder, he.request);
+        byte[] requestBytes = requestBuilder
+                .hostIfMissing(pe.host, pe.port, pe.secure)
+                .body(he.request.body)
+                .build();
+        long peakBody = requestBuilder.bodyLength();
+
+        byte[] responseBytes = null;
+        HarMessage res = he.response;
+        if (res != null && res.status > 0) {
+            // HTTP/2 responses have no reason phrase; an empty statusText stays empty.
+            String reason = res.statusText != null ? res.statusText : ProxymanParser.defaultReasonPhrase(res.status);
+            HttpMessageBuilder responseBuilder = new HttpMessageBuilder()
+                    .startLine(httpVersion(res.version), Integer.toString(res.status), reason);
+            addHeaders(responseBuilder, res);
+            responseBytes = responseBuilder.body(res.body).build();
+            peakBody = Math.max(peakBody, responseBuilder.bodyLength());
+        }
+
+        stats.add(ImportStats.Phase.ASSEMBLY, System.nanoTime() - t0);
+        stats.materialized(peakBody);
+        return new ProxymanParser.RawMessages(requestBytes, responseBytes);
+    }
+
+    // HTTP/2 pseudo-headers have no HTTP/1 form.
+    private static void addHeaders(HttpMessageBuilder builder, HarMessage message) {
+        for (String[] h : message.headers) {
+            String name = h[0];
+            if (name.isEmpty() || name.charAt(0) == ':') continue;
+            if (name.equalsIgnoreCase("Content-Length") || name.equalsIgnoreCase("Transfer-Encoding")) continue;
+            if (name.equalsIgnoreCase("Content-Encoding") && !stillEncoded(h[1], message.body)) continue;
+            builder.header(name, h[1]);
+        }
+    }
+
+    // Browsers store decoded bodies; some exporters (including ours) keep the wire bytes.
+    private static boolean stillEncoded(String encoding, byte[] body) {
+        if (body == null || body.length < 4) return false;
+        String e = encoding.toLowerCase(Locale.ROOT);
+        int b0 = body[0] & 0xff, b1 = body[1] & 0xff;
+        if (e.contains("gzip")) return b0 == 0x1f && b1 == 0x8b;
+        if (e.contains("deflate")) return (b0 & 0x0f) == 8 && ((b0 << 8) | b1) % 31 == 0;
+        if (e.contains("zstd")) return b0 == 0x28 && b1 == 0xb5 && (body[2] & 0xff) == 0x2f && (body[3] & 0xff) == 0xfd;
+        return false;
+    }
+
+    private static String httpVersion(String version) {
+        if (version == null || version.isEmpty() || version.equalsIgnoreCase("unknown")) return "HTTP/1.1";
+        String v = version.toUpperCase(Locale.ROOT);
+        if (v.equals("H2") || v.equals("HTTP/2.0")) return "HTTP/2";
+        if (v.equals("H3") || v.equals("HTTP/3.0")) return "HTTP/3";
+        return v.startsWith("HTTP/") ? v : "HTTP/1.1";
+    }
+
+    private static HarEntry readEntry(Reader in, boolean withBodies) throws IOException {
+        JsonReader r = new JsonReader(in);
+        if (r.peek() != JsonToken.BEGIN_OBJECT) return null;
+
+        HarEntry entry = new HarEntry();
+        r.beginObject();
+        while (r.hasNext()) {
+            switch (r.nextName()) {
+                case "request" -> entry.request = readMessage(r, withBodies);
+                case "response" -> entry.response = readMessage(r, withBodies);
+                case "time" -> {
+                    double time = readNumber(r);
+                    entry.time = time >= 0 ? Math.round(time) : -1;
+                }
+                default -> r.skipValue();
+            }
+        }
+        r.endObject();
+        return entry;
+    }
+
+    private static HarMessage readMessage(JsonReader r, boolean withBodies) throws IOException {
+        if (r.peek() != JsonToken.BEGIN_OBJECT) {
+            r.skipValue();
+            return null;
+        }
+
+        HarMessage m = new HarMessage();
+        r.beginObject();
+        while (r.hasNext()) {
+            switch (r.nextName()) {
+                case "method" -> m.method = readString(r);
+                case "url" -> m.url = readString(r);
+                case "httpVersion" -> m.version = readString(r);
+                case "status" -> m.status = readInt(r);
+                case "statusText" -> m.statusText = readString(r);
+                case "headers" -> readHeaders(r, m.headers);
+                case "postData", "content" -> m.body = readBody(r, m, withBodies);
+                case "bodySize" -> {
+                    double size = readNumber(r);
+                    m.bodySize = size >= 0 ? (long) size : -1;
+                }
+                default -> r.skipValue();
+            }
+        }
+        r.endObject();
+        return m;
+    }
+
+    private static void readHeaders(JsonReader r, List<String[]> out) throws IOException {
+        if (r.peek() != JsonToken.BEGIN_ARRAY) {
+            r.skipValue();
+            return;
+        }
+        r.beginArray();
+        while (r.hasNext()) {
+            if (r.peek() != JsonToken.BEGIN_OBJECT) {
+                r.skipValue();
+                continue;
+            }
+            String name = "", value = "";
+            r.beginObject();
+            while (r.hasNext()) {
+                switch (r.nextName()) {
+                    case "name" -> name = readString(r);
+                    case "value" -> value = readString(r);
+                    default -> r.skipValue();
+                }
+            }
+            r.endObject();
+            out.add(new String[]{name, value});
+        }
+        r.endArray();
+    }
+
+    // postData / content: text, optionally base64 ("encoding"); form posts may only carry params.
+    // Also notes the declared mimeType and size; without bodies only those two are read.
+    private static byte[] readBody(JsonReader r, HarMessage message, boolean withBodies) throws IOException {
+        if (r.peek() != JsonToken.BEGIN_OBJECT) {
+            r.skipValue();
+            return null;
+        }
+        String text = null, encoding = null;
+        StringBuilder params = null;
+        r.beginObject();
+        while (r.hasNext()) {
+            switch (r.nextName()) {
+                case "text" -> {
+                    if (withBodies) text = readString(r);
+                    else r.skipValue();
+                }
+                case "encoding" -> encoding = readString(r);
+                case "params" -> {
+                    if (withBodies) params = readParams(r);
+                    else r.skipValue();
+                }
+                case "mimeType" -> message.mimeType = readString(r);
+                case "size" -> {
+                    double size = readNumber(r);
+                    message.size = size >= 0 ? (long) size : -1;
+                }
+                default -> r.skipValue();
+            }
+        }
+        r.endObject();
+
+        if (!withBodies) return null;
+        if ((text == null || text.isEmpty()) && params != null) text = params.toString();
+        if (text == null || text.isEmpty()) return null;
+        if ("base64".equalsIgnoreCase(encoding)) {
+            try {
+                return Base64.getMimeDecoder().decode(text);
+            } catch (IllegalArgumentException ignored) {
+                // Mislabelled body: keep the text as it is.
+            }
+        }
+        return text.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static StringBuilder readParams(JsonReader r) throws IOException {
+        if (r.peek() != JsonToken.BEGIN_ARRAY) {
+            r.skipValue();
+            return null;
+        }
+        StringBuilder sb = new StringBuilder();
+        r.beginArray();
+        while (r.hasNext()) {
+            if (r.peek() != JsonToken.BEGIN_OBJECT) {
+                r.skipValue();
+                continue;
+            }
+            String name = "", value = "";
+            r.beginObject();
+            while (r.hasNext()) {
+                switch (r.nextName()) {
+                    case "name" -> name = readString(r);
+                    case "value" -> value = readString(r);
+                    default -> r.skipValue();
+                }
+            }
+            r.endObject();
+            if (sb.length() > 0) sb.append('&');
+            sb.append(name).append('=').append(value);
+        }
+        r.endArray();
+        return sb;
+    }
+
+    private static String readString(JsonReader r) throws IOException {
+        JsonToken t = r.peek();
+        if (t == JsonToken.STRING || t == JsonToken.NUMBER) return r.nextString();
+        if (t == JsonToken.BOOLEAN) return Boolean.toString(r.nextBoolean());
+        r.skipValue();
+        return "";
+    }
+
+    // -1 when absent or not a number.
+    private static double readNumber(JsonReader r) throws IOException {
+        JsonToken t = r.peek();
+        if (t == JsonToken.NUMBER || t == JsonToken.STRING) {
+            try {
+                return Double.parseDouble(r.nextString());
+            } catch (NumberFormatException ex) {
+                return -1;
+            }
+        }
+        r.skipValue();
+        return -1;
+    }
+
+    private static int readInt(JsonReader r) throws IOException {
+        JsonToken t = r.peek();
+        if (t == JsonToken.NUMBER || t == JsonToken.STRING) {
+            try {
+                return (int) Double.parseDouble(r.nextString());
+            } catch (NumberFormatException ex) {
+                return 0;
+            }
+        }
+        r.skipValue();
+        return 0;
+    }
+
+    // Walks the JSON structure byte by byte (structural characters are ASCII, so UTF-8 needs no
+    // decoding here) and hands each element of the top-level log.entries array to visitor, with
+    // its byte offset. Only the element being cut out is buffered.
+    private static void scan(FileChannel channel, ElementVisitor visitor) throws Exception {
+        long fileSize = channel.size();
+        ByteBuffer chunk = ByteBuffer.allocate(READ_BUFFER);
+        byte[] element = new byte[READ_BUFFER];
+        int elementLength = 0;
+        long elementOffset = -1;
+
+        byte[] containers = new byte[8];
+        String[] keys = new String[3];
+        byte[] keyBytes = new byte[32];
+        int keyLength = 0;
+        boolean capturingKey = false;
+        String lastString = null;
+
+        int depth = 0;
+        int entriesDepth = -1;
+        boolean inString = false, escape = false;
+        long position = 0;
+
+        while (true) {
+            chunk.clear();
+            int n = channel.read(chunk, position);
+            if (n < 0) break;
+            byte[] buf = chunk.array();
+
+            for (int i = 0; i < n; i++) {
+                byte b = buf[i];
+                if (elementOffset >= 0) {
+                    if (elementLength == element.length) element = Arrays.copyOf(element, element.length * 2);
+                    element[elementLength++] = b;
+                }
+
+                if (inString) {
+                    if (escape) {
+                        escape = false;
+                    } else if (b == '\\') {
+                        escape = true;
+                        continue;
+                    } else if (b == '"') {
+                        inString = false;
+                        if (capturingKey) {
+                            lastString = new String(keyBytes, 0, keyLength, StandardCharsets.UTF_8);
+                            capturingKey = false;
+                        }
+                        continue;
+                    }
+                    if (capturingKey && keyLength < keyBytes.length) keyBytes[keyLength++] = b;
+                    continue;
+                }
+
+                switch (b) {
+                    case '"' -> {
+                        inString = true;
+                        // Only keys of the two outer objects matter for finding log.entries.
+                        capturingKey = depth >= 1 && depth <= 2 && containers[depth] == '{';
+                        keyLength = 0;
+                        lastString = null;
+                    }
+                    case ':' -> {
+                        if (depth >= 1 && depth <= 2) keys[depth] = lastString;
+                    }
+                    case '{', '[' -> {
+                        if (depth == entriesDepth && elementOffset < 0 && b == '{') {
+                            elementOffset = position + i;
+                            element[0] = b;
+                            elementLength = 1;
+                        }
+                        depth++;
+                        if (depth < containers.length) containers[depth] = b;
+                        if (b == '[' && depth == 3 && entriesDepth < 0 && containers[1] == '{' && containers[2] == '{'
+                                && "log".equals(keys[1]) && "entries".equals(keys[2])) {
+                            entriesDepth = 3;
+                        }
+                    }
+                    case '}', ']' -> {
+                        depth--;
+                        if (depth == entriesDepth && elementOffset >= 0) {
+                            boolean more = visitor.visit(elementOffset, element, elementLength, fileSize);
+                            elementOffset = -1;
+                            elementLength = 0;
+                            if (!more) return;
+                        } else if (depth == entriesDepth - 1 && entriesDepth > 0) {
+                            return;
+                        }
+                    }
+                    default -> {}
+                }
+            }
+            position += n;
+        }
+        if (entriesDepth < 0) throw new IOException("Not a HAR file: no log.entries array");
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buf, long position) throws IOException {
+        while (buf.hasRemaining()) {
+            int n = channel.read(buf, position);
+            if (n < 0) break;
+            position += n;
+        }
+    }
+
+    // Reads from a shared channel with positional reads, so entries can be rebuilt concurrently.
+    private static final class PositionalInputStream extends InputStream {
+        private final FileChannel channel;
+        private long position;
+
+        PositionalInputStream(FileChannel channel, long position) {
+            this.channel = channel;
+            this.position = position;
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] one = new byte[1];
+            return read(one, 0, 1) < 0 ? -1 : one[0] & 0xff;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n = channel.read(ByteBuffer.wrap(b, off, len), position);
+            if (n > 0) position += n;
+            return n;
+        }
+    }
+}
@@ -0,0 +1,268 @@
+import com.google.gson.stream.JsonWriter;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+// Streams a HAR 1.2 log to a Writer one entry at a time. Structure goes through Gson's
+// JsonWriter; bodies are escaped or base64-encoded in small chunks straight into the Writer,
+// so neither the log nor a body's JSON form is ever held in memory. An entry's time is its
+// recorded duration when known (HAR imports), otherwise zero, and is booked entirely as wait;
+// startedDateTime is a fixed placeholder. Bodies that are not valid UTF-8 are written
+// base64-encoded.
+public class HarWriter implements Closeable {
+    static final String CREATOR = "Proxyman Log Importer";
+    static final String VERSION = "1.0.0";
+
+    private static final int CHUNK = 8192;
+
+    private final Writer out;
+    private final JsonWriter json;
+    private final char[] chunk = new char[CHUNK];
+    private final CharBuffer decoded = CharBuffer.allocate(CHUNK);
+
+    // Lets the JDK's streaming base64 encoder write into the Writer; closing it is a no-op.
+    private final OutputStream asciiOut = new OutputStream() {
+        @Override public void write(int b) throws IOException { out.write(b); }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            while (len > 0) {
+                int n = Math.min(len, CHUNK);
+                for (int i = 0; i < n; i++) chunk[i] = (char) (b[off + i] & 0xff);
+                out.write(chunk, 0, n);
+                off += n;
+                len -= n;
+            }
+        }
+    };
+
+    public HarWriter(Writer out) {
+        this.out = out;
+        this.json = new JsonWriter(out);
+    }
+
+    public void begin() throws IOException {
+        json.beginObject();
+        json.name("log").beginObject();
+        json.name("version").value("1.2");
+        json.name("creator").beginObject().name("name").value(CREATOR).name("version").value(VERSION).endObject();
+        json.name("entries").beginArray();
+    }
+
+    public void end() throws IOException {
+        json.endArray();
+        json.endObject();
+        json.endObject();
+        json.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        json.close();
+    }
+
+    public void writeEntry(ProxymanParser.ParsedEntry e, ProxymanParser.RawMessages raw) throws IOException {
+        RawHttp request = RawHttp.parse(raw.request);
+        RawHttp response = raw.response != null ? RawHttp.parse(raw.response) : null;
+
+        json.beginObject();
+        json.name("startedDateTime").value("1970-01-01T00:00:00.000Z");
+        // Only the total is known when the capture recorded one; it is booked as wait.
+        long time = Math.max(0, e.durationMillis);
+        json.name("time").value(time);
+        writeRequest(e, request);
+        writeResponse(response);
+        json.name("cache").beginObject().endObject();
+        json.name("timings").beginObject()
+                .name("send").value(0)
+                .name("wait").value(time)
+                .name("receive").value(0)
+                .endObject();
+        json.name("comment").value(e.source.file.getName() + "/" + e.entryName);
+        json.endObject();
+    }
+
+    private void writeRequest(ProxymanParser.ParsedEntry e, RawHttp request) throws IOException {
+        String[] line = request.startLineParts();
+
+        json.name("request").beginObject();
+        json.name("method").value(e.method);
+        json.name("url").value(ExportFormat.url(e));
+        json.name("httpVersion").value(line[2]);
+        json.name("cookies").beginArray().endArray();
+        writeHeaders(request);
+
+        json.name("queryString").beginArray();
+        int q = e.path.indexOf('?');
+        if (q >= 0) {
+            for (String pair : e.path.substring(q + 1).split("&")) {
+                if (pair.isEmpty()) continue;
+                int eq = pair.indexOf('=');
+                json.beginObject()
+                        .name("name").value(eq >= 0 ? pair.substring(0, eq) : pair)
+                        .name("value").value(eq >= 0 ? pair.substring(eq + 1) : "")
+                        .endObject();
+            }
+        }
+        json.endArray();
+
+        if (request.bodyLength() > 0) {
+            boolean text = isUtf8(request);
+            json.name("postData").beginObject();
+            json.name("mimeType").value(mimeType(request));
+            json.name("text");
+            writeBody(request, text);
+            if (!text) json.name("encoding").value("base64");
+            json.endObject();
+        }
+        json.name("headersSize").value(-1);
+        json.name("bodySize").value(request.bodyLength());
+        json.endObject();
+    }
+
+    private void writeResponse(RawHttp response) throws IOException {
+        json.name("response").beginObject();
+        if (response == null) {
+            json.name("status").value(0);
+            json.name("statusText").value("");
+            json.name("httpVersion").value("");
+            json.name("cookies").beginArray().endArray();
+            json.name("headers").beginArray().endArray();
+            json.name("content").beginObject().name("size").value(0).name("mimeType").value("").endObject();
+            json.name("redirectURL").value("");
+            json.name("headersSize").value(-1);
+            json.name("bodySize").value(-1);
+            json.endObject();
+            return;
+        }
+
+        String[] line = response.startLineParts();
+        int status;
+        try {
+            status = Integer.parseInt(line[1]);
+        } catch (NumberFormatException ex) {
+            status = 0;
+        }
+
+        json.name("status").value(status);
+        json.name("statusText").value(line[2]);
+        json.name("httpVersion").value(line[0]);
+        json.name("cookies").beginArray().endArray();
+        writeHeaders(response);
+
+        json.name("content").beginObject();
+        json.name("size").value(response.bodyLength());
+        json.name("mimeType").value(mimeType(response));
+        if (response.bodyLength() > 0) {
+            boolean text = isUtf8(response);
+            json.name("text");
+            writeBody(response, text);
+            if (!text) json.name("encoding").value("base64");
+        }
+        json.endObject();
+
+        String location = response.header("Location");
+        json.name("redirectURL").value(location != null ? location : "");
+        json.name("headersSize").value(-1);
+        json.name("bodySize").value(response.bodyLength());
+        json.endObject();
+    }
+
+    private void writeHeaders(RawHttp message) throws IOException {
+        json.name("headers").beginArray();
+        for (String[] h : message.headers) {
+            json.beginObject().name("name").value(h[0]).name("value").value(h[1]).endObject();
+        }
+        json.endArray();
+    }
+
+    // An empty raw value makes JsonWriter emit the pending name and separator; the string
+    // itself is then written to the underlying Writer piece by piece.
+    private void writeBody(RawHttp message, boolean text) throws IOException {
+        json.jsonValue("");
+        out.write('"');
+        if (text) {
+            writeEscaped(message);
+        } else {
+            try (OutputStream b64 = Base64.getEncoder().wrap(asciiOut)) {
+                b64.write(message.bytes, message.bodyOffset, message.bodyLength());
+            }
+        }
+        out.write('"');
+    }
+
+    private void writeEscaped(RawHttp message) throws IOException {
+        CharsetDecoder decoder = StandardCharsets.UTF_8.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        ByteBuffer in = ByteBuffer.wrap(message.bytes, message.bodyOffset, message.bodyLength());
+        while (true) {
+            decoded.clear();
+            CoderResult result = decoder.decode(in, decoded, true);
+            if (result.isUnderflow()) result = decoder.flush(decoded);
+            decoded.flip();
+            escape(decoded);
+            if (result.isUnderflow()) return;
+        }
+    }
+
+    private void escape(CharBuffer chars) throws IOException {
+        int n = 0;
+        while (chars.hasRemaining()) {
+            if (n > CHUNK - 6) {
+                out.write(chunk, 0, n);
+                n = 0;
+            }
+            char c = chars.get();
+            String replacement = switch (c) {
+                case '"' -> "\\\"";
+                case '\\' -> "\\\\";
+                case '\n' -> "\\n";
+                case '\r' -> "\\r";
+                case '\t' -> "\\t";
+                case '\u2028' -> "\\u2028";
+                case '\u2029' -> "\\u2029";
+                default -> c < 0x20 ? String.format("\\u%04x", (int) c) : null;
+            };
+            if (replacement == null) {
+                chunk[n++] = c;
+            } else {
+                replacement.getChars(0, replacement.length(), chunk, n);
+                n += replacement.length();
+            }
+        }
+        out.write(chunk, 0, n);
+    }
+
+    private boolean isUtf8(RawHttp message) {
+        CharsetDecoder decoder = StandardCharsets.UTF_8.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPORT)
+                .onUnmappableCharacter(CodingErrorAction.REPORT);
+        ByteBuffer in = ByteBuffer.wrap(message.bytes, message.bodyOffset, message.bodyLength());
+        try {
+            while (true) {
+                decoded.clear();
+                CoderResult result = decoder.decode(in, decoded, true);
+                if (result.isError()) result.throwException();
+                if (result.isUnderflow()) return true;
+            }
+        } catch (CharacterCodingException ex) {
+            return false;
+        }
+    }
+
+    private static String mimeType(RawHttp message) {
+        String type = message.header("Content-Type");
+        return type != null ? type : "";
+    }
+}
@@ -0,0 +1,91 @@
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Shared tables for header decoding and message assembly. A capture repeats a few dozen header
+// names and many of their values across thousands of entries, so names and short values are
+// interned as they are decoded, URL-decoded values are memoized, and every distinct
+// "name: value\r\n" line is encoded to UTF-8 once. A table that reaches its cap is cleared
+// rather than evicted, which keeps one-off values (dates, cookies, trace ids) from growing it.
+final class HeaderDictionary {
+    static final HeaderDictionary SHARED = new HeaderDictionary(16_384, 65_536);
+
+    // Longer values are rarely repeated and are used as they are.
+    private static final int MAX_VALUE_LENGTH = 512;
+
+    private final int maxStrings;
+    private final int maxLines;
+    private final Map<String, String> strings = new ConcurrentHashMap<>();
+    private final Map<String, String> urlDecoded = new ConcurrentHashMap<>();
+    // Keyed by name, then by the value as captured; names and values are interned, so both
+    // lookups hit cached hash codes and identity comparisons.
+    private final Map<String, Map<String, byte[]>> decodedLines = new ConcurrentHashMap<>();
+    private final Map<String, Map<String, byte[]>> plainLines = new ConcurrentHashMap<>();
+    private final AtomicInteger lines = new AtomicInteger();
+
+    HeaderDictionary(int maxStrings, int maxLines) {
+        this.maxStrings = maxStrings;
+        this.maxLines = maxLines;
+    }
+
+    String intern(String s) {
+        if (s == null || s.length() > MAX_VALUE_LENGTH) return s;
+        String known = strings.get(s);
+        if (known != null) return known;
+        if (strings.size() >= maxStrings) strings.clear();
+        known = strings.putIfAbsent(s, s);
+        return known != null ? known : s;
+    }
+
+    // Proxyman stores some header values percent-encoded; values that do not decode are kept.
+    String urlDecode(String s) {
+        if (s == null) return "";
+        if (s.indexOf('%') < 0) return s;
+        if (s.length() > MAX_VALUE_LENGTH) return decode(s);
+
+        String known = urlDecoded.get(s);
+        if (known != null) return known;
+        if (urlDecoded.size() >= maxStrings) urlDecoded.clear();
+        String decoded = decode(s);
+        urlDecoded.put(s, decoded);
+        return decoded;
+    }
+
+    // UTF-8 bytes of "name: value\r\n", with value URL-decoded first when urlDecode is set.
+    // Callers must not modify the returned array.
+    byte[] line(String name, String value, boolean urlDecode) {
+        if (value == null) value = "";
+        if (value.length() > MAX_VALUE_LENGTH) return encode(name, urlDecode ? urlDecode(value) : value);
+
+        Map<String, byte[]> byValue = (urlDecode ? decodedLines : plainLines).computeIfAbsent(name, n -> new ConcurrentHashMap<>());
+        byte[] line = byValue.get(value);
+        if (line != null) return line;
+
+        if (lines.incrementAndGet() > maxLines) {
+            decodedLines.clear();
+            plainLines.clear();
+            lines.set(0);
+        }
+        line = encode(name, urlDecode ? urlDecode(value) : value);
+        byValue.put(value, line);
+        return line;
+    }
+
+    private static byte[] encode(String name, String value) {
+        byte[] line = new byte[HttpMessageBuilder.utf8Length(name) + 2 + HttpMessageBuilder.utf8Length(value) + 2];
+        int pos = HttpMessageBuilder.writeUtf8(name, line, 0);
+        line[pos++] = ':';
+        line[pos++] = ' ';
+        pos = HttpMessageBuilder.writeUtf8(value, line, pos);
+        line[pos++] = '\r';
+        line[pos] = '\n';
+        return line;
+    }
+
+    private static String decode(String s) {
+        try { return URLDecoder.decode(s, StandardCharsets.UTF_8); }
+        catch (Exception ignored) { return s; }
+    }
+}
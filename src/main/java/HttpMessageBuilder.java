@@ -0,0 +1,182 @@
+import java.util.Arrays;
+
+// Assembles one raw HTTP message into a single exactly-sized byte[]. Parts are collected by
+// reference, the UTF-8 size is computed up front, and everything (start line, headers, the
+// synthesized Host/Content-Length lines and the base64-decoded body) is then written in place.
+// Header lines come pre-encoded from HeaderDictionary and are copied as they are.
+public class HttpMessageBuilder {
+    private static final byte[] CRLF = {'\r', '\n'};
+    private static final byte[] COLON_SP = {':', ' '};
+
+    private final String[] startLine = new String[3];
+    private int startParts;
+
+    private byte[][] lines = new byte[16][];
+    private int headerCount;
+
+    private boolean hasHost;
+    private boolean hasContentLength;
+    private String hostValue;
+
+    private String bodyBase64;
+    private byte[] bodyBytes;
+    private int bodyLength;
+    private long base64Nanos;
+
+    public HttpMessageBuilder startLine(String a, String b, String c) {
+        startLine[0] = a;
+        startLine[1] = b;
+        startLine[2] = c;
+        startParts = c == null || c.isEmpty() ? 2 : 3;
+        return this;
+    }
+
+    // Emits the enabled Proxyman headers and notes, in the same pass, whether Host and
+    // Content-Length were among them. Content-Length counts even when disabled, so a
+    // deliberately switched-off header is not silently re-added with a different value.
+    public HttpMessageBuilder buildHeaders(ProxymanModels.HeaderBlock hb) {
+        if (hb == null || hb.entries == null) return this;
+
+        for (ProxymanModels.HeaderEntry he : hb.entries) {
+            if (he == null || he.key == null) continue;
+
+            String name = he.key.name == null ? "" : he.key.name;
+            if (name.equalsIgnoreCase("Content-Length")) hasContentLength = true;
+            if (he.isEnabled != null && !he.isEnabled) continue;
+            if (name.equalsIgnoreCase("host")) hasHost = true;
+            if (name.isEmpty()) continue;
+
+            addLine(HeaderDictionary.SHARED.line(name, he.value, true));
+        }
+        return this;
+    }
+
+    // Adds one header as given, for formats that store plain header values (HAR).
+    public HttpMessageBuilder header(String name, String value) {
+        if (name == null || name.isEmpty()) return this;
+        if (name.equalsIgnoreCase("Content-Length")) hasContentLength = true;
+        if (name.equalsIgnoreCase("host")) hasHost = true;
+
+        addLine(HeaderDictionary.SHARED.line(name, value, false));
+        return this;
+    }
+
+    private void addLine(byte[] line) {
+        if (headerCount == lines.length) lines = Arrays.copyOf(lines, headerCount * 2);
+        lines[headerCount++] = line;
+    }
+
+    public HttpMessageBuilder hostIfMissing(String host, int port, boolean secure) {
+        if (hasHost || host == null || host.isEmpty()) return this;
+        boolean nonDefaultPort = (secure && port != 443) || (!secure && port != 80);
+        hostValue = nonDefaultPort ? host + ":" + port : host;
+        return this;
+    }
+
+    public HttpMessageBuilder body(String base64) {
+        int len = ProxymanDecoder.base64DecodedLength(base64);
+        bodyBase64 = len > 0 ? base64 : null;
+        bodyBytes = null;
+        bodyLength = Math.max(len, 0);
+        return this;
+    }
+
+    // Body that is already decoded; copied into the message by build().
+    public HttpMessageBuilder body(byte[] bytes) {
+        bodyBase64 = null;
+        bodyBytes = bytes != null && bytes.length > 0 ? bytes : null;
+        bodyLength = bodyBytes != null ? bodyBytes.length : 0;
+        return this;
+    }
+
+    public byte[] build() {
+        String contentLength = bodyLength > 0 && !hasContentLength ? Integer.toString(bodyLength) : null;
+
+        int size = 2;
+        for (int i = 0; i < startParts; i++) size += utf8Length(startLine[i]) + (i > 0 ? 1 : 0);
+        for (int i = 0; i < headerCount; i++) size += lines[i].length;
+        if (hostValue != null) size += 6 + utf8Length(hostValue) + 2;
+        if (contentLength != null) size += 16 + contentLength.length() + 2;
+        size += 2 + bodyLength;
+
+        byte[] out = new byte[size];
+        int pos = 0;
+        for (int i = 0; i < startParts; i++) {
+            if (i > 0) out[pos++] = ' ';
+            pos = writeUtf8(startLine[i], out, pos);
+        }
+        pos = write(CRLF, out, pos);
+
+        for (int i = 0; i < headerCount; i++) pos = write(lines[i], out, pos);
+        if (hostValue != null) pos = writeHeader("Host", hostValue, out, pos);
+        if (contentLength != null) pos = writeHeader("Content-Length", contentLength, out, pos);
+        pos = write(CRLF, out, pos);
+
+        if (bodyBytes != null) {
+            System.arraycopy(bodyBytes, 0, out, pos, bodyLength);
+        } else if (bodyLength > 0) {
+            long t0 = System.nanoTime();
+            ProxymanDecoder.decodeBase64(bodyBase64, out, pos, bodyLength);
+            base64Nanos = System.nanoTime() - t0;
+        }
+        return out;
+    }
+
+    public int bodyLength() { return bodyLength; }
+
+    // Time the last build() spent decoding the body, for ImportStats.
+    public long base64Nanos() { return base64Nanos; }
+
+    private static int writeHeader(String name, String value, byte[] out, int pos) {
+        pos = writeUtf8(name, out, pos);
+        pos = write(COLON_SP, out, pos);
+        pos = writeUtf8(value, out, pos);
+        return write(CRLF, out, pos);
+    }
+
+    private static int write(byte[] src, byte[] out, int pos) {
+        System.arraycopy(src, 0, out, pos, src.length);
+        return pos + src.length;
+    }
+
+    // Matches String.getBytes(UTF_8): unpaired surrogates become '?'.
+    static int utf8Length(String s) {
+        int n = 0;
+        for (int i = 0, len = s.length(); i < len; i++) {
+            char c = s.charAt(i);
+            if (c < 0x80) n++;
+            else if (c < 0x800) n += 2;
+            else if (Character.isHighSurrogate(c) && i + 1 < len && Character.isLowSurrogate(s.charAt(i + 1))) {
+                n += 4;
+                i++;
+            } else if (Character.isSurrogate(c)) n++;
+            else n += 3;
+        }
+        return n;
+    }
+
+    static int writeUtf8(String s, byte[] out, int pos) {
+        for (int i = 0, len = s.length(); i < len; i++) {
+            char c = s.charAt(i);
+            if (c < 0x80) {
+                out[pos++] = (byte) c;
+            } else if (c < 0x800) {
+                out[pos++] = (byte) (0xC0 | c >> 6);
+                out[pos++] = (byte) (0x80 | c & 0x3F);
+            } else if (Character.isHighSurrogate(c) && i + 1 < len && Character.isLowSurrogate(s.charAt(i + 1))) {
+                int cp = Character.toCodePoint(c, s.charAt(++i));
+                out[pos++] = (byte) (0xF0 | cp >> 18);
+                out[pos++] = (byte) (0x80 | cp >> 12 & 0x3F);
+                out[pos++] = (byte) (0x80 | cp >> 6 & 0x3F);
+                out[pos++] = (byte) (0x80 | cp & 0x3F);
+            } else if (Character.isSurrogate(c)) {
+                out[pos++] = '?';
+            } else {
+                out[pos++] = (byte) (0xE0 | c >> 12);
+                out[pos++] = (byte) (0x80 | c >> 6 & 0x3F);
+                out[pos++] = (byte) (0x80 | c & 0x3F);
+            }
+        }
+        return pos;
+    }
+}
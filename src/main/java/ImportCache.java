@@ -0,0 +1,390 @@
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.BooleanSupplier;
+
+// On-disk cache of imported archives. For each archive it keeps a compact binary index of the
+// table rows (<key>.idx) and the pre-built raw request/response bytes of every entry (<key>.dat),
+// so reopening the same capture reads the index and never inflates, parses or base64-decodes
+// anything. Each message is stored as a head and a body segment; repeated bodies are written
+// once (BodyDedup). Keys combine file size, mtime and the parser's digest of the file (the central
+// directory for Proxyman archives). Once the directory exceeds its cap, the least recently
+// opened archives are evicted.
+public class ImportCache {
+    private static final int MAGIC = 0x50584331; // "PXC1"
+    private static final int VERSION = 5;
+    private static final String INDEX_SUFFIX = ".idx";
+    private static final String DATA_SUFFIX = ".dat";
+    private static final String TEMP_SUFFIX = ".tmp";
+    // Index layout written by store(): magic, version and record count, then one record per entry.
+    private static final int HEADER_BYTES = 4 + 4 + 4;
+    // Fixed part of a record: offset (8), ordinal (4), four head/body segments of position and
+    // length (4 × 12), port (4), secure (1), status (4), fingerprint (8), response size (8),
+    // duration (8) and the length prefixes of its five strings (5 × 4). Keep in step with store().
+    private static final int RECORD_FIXED_BYTES = 8 + 4 + 4 * 12 + 4 + 1 + 4 + 8 + 8 + 8 + 5 * 4;
+
+    private final File dir;
+    private volatile long maxBytes;
+
+    public ImportCache(File dir, long maxBytes) {
+        this.dir = dir;
+        this.maxBytes = maxBytes;
+    }
+
+    public static File defaultDir() {
+        return new File(new File(System.getProperty("user.home"), ".proxyman-log-importer"), "cache");
+    }
+
+    public boolean isEnabled() { return maxBytes > 0; }
+
+    public void setMaxBytes(long maxBytes) {
+        this.maxBytes = maxBytes;
+        if (maxBytes > 0) evict(null);
+    }
+
+    public static String key(File file) throws IOException {
+        return key(file, CaptureParsers.detect(file));
+    }
+
+    static String key(File file, CaptureParser parser) throws IOException {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            ByteBuffer header = ByteBuffer.allocate(16).putLong(file.length()).putLong(file.lastModified());
+            digest.update(header.array());
+            digest.update(parser.digest(file));
+
+            StringBuilder sb = new StringBuilder(64);
+            for (byte b : digest.digest()) sb.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+            return sb.toString();
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    // Emits the cached index of file through listener and returns true, or returns false without
+    // emitting anything if the archive is not cached or its cache files are unreadable. Like
+    // ProxymanParser.parse, it records into stats but leaves finishing them to the caller.
+    public boolean load(File file, ProxymanParser.EntryListener listener, ImportStats stats) throws IOException {
+        CaptureParser parser = CaptureParsers.detect(file);
+        String key = key(file, parser);
+        File index = new File(dir, key + INDEX_SUFFIX);
+        File data = new File(dir, key + DATA_SUFFIX);
+        if (!index.isFile() || !data.isFile()) return false;
+
+        ArchiveSource source = new ArchiveSource(file, parser, stats);
+        ProxymanParser.ParsedEntry[] entries;
+        CachedMessages messages = null;
+        // Read onto the heap rather than mapped: the index is read once, front to back, and a
+        // mapping would stay live until GC, keeping delete() below from working on Windows.
+        ByteBuffer buf = readIndex(index);
+        try {
+            if (buf.getInt() != MAGIC || buf.getInt() != VERSION) {
+                // Written by an older build; store() replaces it once the archive is parsed.
+                delete(key);
+                return false;
+            }
+
+            // Records are stored in entry offset order; ordinal restores the import order.
+            int count = buf.getInt();
+            entries = new ProxymanParser.ParsedEntry[count];
+            messages = new CachedMessages(data, count);
+            for (int i = 0; i < count; i++) {
+                long offset = buf.getLong();
+                int ordinal = buf.getInt();
+                messages.offsets[i] = offset;
+                for (int segment = i * 4; segment < i * 4 + 4; segment++) {
+                    messages.positions[segment] = buf.getLong();
+                    messages.lengths[segment] = buf.getInt();
+                }
+                int port = buf.getInt();
+                boolean secure = buf.get() != 0;
+                int status = buf.getInt();
+                long fingerprint = buf.getLong();
+                long responseSize = buf.getLong();
+                long durationMillis = buf.getLong();
+                String entryName = readString(buf);
+                String host = readString(buf);
+                String method = readString(buf);
+                String path = readString(buf);
+                String contentType = HeaderDictionary.SHARED.intern(readString(buf));
+                entries[ordinal] = new ProxymanParser.ParsedEntry(source, entryName, offset, host, port, secure, method, path,
+                        status, fingerprint, contentType, responseSize, durationMillis);
+            }
+        } catch (RuntimeException ex) {
+            // Truncated or corrupt index: drop it and let the caller parse the archive instead.
+            if (messages != null) messages.close();
+            delete(key);
+            return false;
+        }
+
+        source.attachCache(messages);
+        index.setLastModified(System.currentTimeMillis());
+
+        stats.fileFromCache(entries.length);
+        listener.onProgress(0, entries.length);
+        int emitted = 0;
+        for (; emitted < entries.length; emitted++) {
+            if (listener.isCancelled()) break;
+            listener.onEntry(entries[emitted]);
+            stats.entryEmitted();
+            listener.onProgress(emitted + 1, entries.length);
+        }
+        if (emitted == 0) source.close();
+        return true;
+    }
+
+    // Writes the index and raw messages for entries, which must all come from one archive source.
+    // Runs on the calling thread; nothing is published unless every entry was written.
+    public void store(List<ProxymanParser.ParsedEntry> entries, BooleanSupplier cancelled) throws Exception {
+        if (entries.isEmpty()) return;
+        ArchiveSource source = entries.get(0).source;
+        String key = key(source.file, source.parser);
+        File index = new File(dir, key + INDEX_SUFFIX);
+        File data = new File(dir, key + DATA_SUFFIX);
+        if (index.isFile() && data.isFile()) return;
+        // evict() would delete an archive that alone exceeds the cap right after writing it.
+        if (minimumBytes(entries) > maxBytes) return;
+
+        if (!dir.isDirectory() && !dir.mkdirs()) throw new IOException("Cannot create cache directory " + dir);
+        File indexTemp = new File(dir, key + INDEX_SUFFIX + TEMP_SUFFIX);
+        File dataTemp = new File(dir, key + DATA_SUFFIX + TEMP_SUFFIX);
+
+        Integer[] byOffset = new Integer[entries.size()];
+        for (int i = 0; i < byOffset.length; i++) byOffset[i] = i;
+        Arrays.sort(byOffset, Comparator.comparingLong(i -> entries.get(i).offset));
+
+        // Bookkeeping for cache writes must not show up in the import's own stats.
+        ImportStats scratch = new ImportStats(null);
+        boolean published = false;
+        FileChannel dataChannel = FileChannel.open(dataTemp.toPath(), StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE, StandardOpenOption.READ);
+        try (DataOutputStream dataOut = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(dataChannel), 1 << 16));
+             DataOutputStream indexOut = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(indexTemp), 1 << 16))) {
+            indexOut.writeInt(MAGIC);
+            indexOut.writeInt(VERSION);
+            indexOut.writeInt(byOffset.length);
+
+            BodyDedup dedup = new BodyDedup(dataChannel, dataOut);
+            long dataOffset = 0;
+            for (int ordinal : byOffset) {
+                if (cancelled.getAsBoolean()) return;
+                ProxymanParser.ParsedEntry pe = entries.get(ordinal);
+                if (pe.source != source) throw new IllegalArgumentException("Entries span more than one archive");
+
+                ProxymanParser.RawMessages raw = source.parser.materializeRaw(source, pe, scratch);
+                indexOut.writeLong(pe.offset);
+                indexOut.writeInt(ordinal);
+                dataOffset = writeMessage(raw.request, dataOut, indexOut, dedup, dataOffset);
+                if (raw.response != null) {
+                    dataOffset = writeMessage(raw.response, dataOut, indexOut, dedup, dataOffset);
+                } else {
+                    indexOut.writeLong(0);
+                    indexOut.writeInt(-1);
+                    indexOut.writeLong(0);
+                    indexOut.writeInt(0);
+                }
+                indexOut.writeInt(pe.port);
+                indexOut.writeByte(pe.secure ? 1 : 0);
+                indexOut.writeInt(pe.status);
+                indexOut.writeLong(pe.fingerprint);
+                // The body is at hand here, so sizes the capture left out are cached exactly.
+                indexOut.writeLong(pe.responseSize >= 0 || raw.response == null ? pe.responseSize
+                        : raw.response.length - RawHttp.bodyOffset(raw.response));
+                indexOut.writeLong(pe.durationMillis);
+                writeString(indexOut, pe.entryName);
+                writeString(indexOut, pe.host);
+                writeString(indexOut, pe.method);
+                writeString(indexOut, pe.path);
+                writeString(indexOut, pe.contentType);
+            }
+            source.stats.bodiesShared(dedup.sharedBodies(), dedup.savedBytes());
+            published = true;
+        } finally {
+            dataChannel.close();
+            if (published) {
+                // The index goes last: a present .idx always has a complete .dat next to it.
+                Files.move(dataTemp.toPath(), data.toPath(), StandardCopyOption.REPLACE_EXISTING);
+                Files.move(indexTemp.toPath(), index.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            } else {
+                indexTemp.delete();
+                dataTemp.delete();
+            }
+        }
+        evict(key);
+    }
+
+    // Lower bound on the cache files for entries, from the row data alone: the index records and
+    // one response body per distinct declared size, since only bodies of equal length can share
+    // storage in the data file.
+    static long minimumBytes(List<ProxymanParser.ParsedEntry> entries) {
+        long total = HEADER_BYTES;
+        Set<Long> bodySizes = new HashSet<>();
+        for (ProxymanParser.ParsedEntry pe : entries) {
+            total += RECORD_FIXED_BYTES + pe.entryName.length() + pe.host.length() + pe.method.length() + pe.path.length()
+                    + pe.contentType.length();
+            if (pe.responseSize > 0 && bodySizes.add(pe.responseSize)) total += pe.responseSize;
+        }
+        return total;
+    }
+
+    public synchronized long sizeOnDisk() {
+        long total = 0;
+        File[] files = dir.listFiles();
+        if (files != null) for (File f : files) total += f.length();
+        return total;
+    }
+
+    public synchronized void clear() {
+        File[] files = dir.listFiles();
+        if (files == null) return;
+        for (File f : files) {
+            String name = f.getName();
+            if (name.endsWith(INDEX_SUFFIX) || name.endsWith(DATA_SUFFIX) || name.endsWith(TEMP_SUFFIX)) f.delete();
+        }
+    }
+
+    // Deletes the least recently opened archives until the directory fits under maxBytes. The
+    // archive just written (keep) goes only if it alone exceeds the cap.
+    private synchronized void evict(String keep) {
+        File[] indexes = dir.listFiles((d, name) -> name.endsWith(INDEX_SUFFIX));
+        if (indexes == null) return;
+        Arrays.sort(indexes, Comparator.comparingLong(File::lastModified));
+
+        long total = sizeOnDisk();
+        List<String> keys = new ArrayList<>();
+        for (File index : indexes) {
+            String name = index.getName();
+            keys.add(name.substring(0, name.length() - INDEX_SUFFIX.length()));
+        }
+        if (keep != null && keys.remove(keep)) keys.add(keep);
+
+        for (String key : keys) {
+            if (total <= maxBytes) break;
+            total -= delete(key);
+        }
+    }
+
+    private synchronized long delete(String key) {
+        long freed = 0;
+        for (String suffix : new String[]{INDEX_SUFFIX, DATA_SUFFIX}) {
+            File f = new File(dir, key + suffix);
+            long len = f.length();
+            if (f.delete()) freed += len;
+        }
+        return freed;
+    }
+
+    // Writes the head of message and, unless an identical body is already in the file, its body,
+    // and records both segments in the index. Returns the new end of the data file.
+    private static long writeMessage(byte[] message, DataOutputStream dataOut, DataOutputStream indexOut,
+                                     BodyDedup dedup, long end) throws IOException {
+        int bodyOffset = RawHttp.bodyOffset(message);
+        int bodyLength = message.length - bodyOffset;
+
+        dataOut.write(message, 0, bodyOffset);
+        indexOut.writeLong(end);
+        indexOut.writeInt(bodyOffset);
+        end += bodyOffset;
+
+        long bodyPosition = dedup.share(message, bodyOffset, bodyLength, end);
+        if (bodyPosition < 0) {
+            dataOut.write(message, bodyOffset, bodyLength);
+            bodyPosition = end;
+            end += bodyLength;
+        }
+        indexOut.writeLong(bodyPosition);
+        indexOut.writeInt(bodyLength);
+        return end;
+    }
+
+    private static void writeString(DataOutputStream out, String s) throws IOException {
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static ByteBuffer readIndex(File file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE) throw new IOException("Cache index too large: " + file);
+            ByteBuffer buf = ByteBuffer.allocate((int) size);
+            while (buf.hasRemaining()) {
+                if (channel.read(buf, buf.position()) < 0) throw new EOFException("Cache index truncated");
+            }
+            return buf.flip();
+        }
+    }
+
+    private static String readString(ByteBuffer buf) {
+        byte[] bytes = new byte[buf.getInt()];
+        buf.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    // Serves raw messages for one cached archive with positional reads on the data file. Arrays
+    // are sorted by entry offset, which is how entries are looked up, as in ProxymanArchive.entryAt.
+    // Entry i has four segments from i * 4: request head and body, then response head and body;
+    // a response head length of -1 means the entry has no response.
+    static final class CachedMessages implements Closeable {
+        private final FileChannel channel;
+        final long[] offsets;
+        final long[] positions;
+        final int[] lengths;
+
+        CachedMessages(File data, int count) throws IOException {
+            this.channel = FileChannel.open(data.toPath(), StandardOpenOption.READ);
+            this.offsets = new long[count];
+            this.positions = new long[count * 4];
+            this.lengths = new int[count * 4];
+        }
+
+        ProxymanParser.RawMessages read(ProxymanParser.ParsedEntry pe) throws IOException {
+            int i = Arrays.binarySearch(offsets, pe.offset);
+            if (i < 0) throw new IOException("Entry " + pe.entryName + " missing from cache");
+
+            byte[] request = read(i * 4);
+            byte[] response = lengths[i * 4 + 2] >= 0 ? read(i * 4 + 2) : null;
+            return new ProxymanParser.RawMessages(request, response);
+        }
+
+        private byte[] read(int head) throws IOException {
+            int headLength = lengths[head];
+            byte[] out = new byte[headLength + lengths[head + 1]];
+            ByteBuffer buf = ByteBuffer.wrap(out, 0, headLength);
+            readFully(buf, positions[head]);
+            readFully(buf.limit(out.length), positions[head + 1] - headLength);
+            return out;
+        }
+
+        // Fills buf up to its limit; position is where index 0 of the backing array would be.
+        private void readFully(ByteBuffer buf, long position) throws IOException {
+            while (buf.hasRemaining()) {
+                if (channel.read(buf, position + buf.position()) < 0) throw new EOFException("Cache data truncated");
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            channel.close();
+        }
+    }
+}
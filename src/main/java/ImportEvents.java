@@ -0,0 +1,57 @@
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+// JFR events for profiling imports inside a running Burp, e.g. with
+// jcmd <pid> JFR.start name=proxyman settings=profile. They cost next to nothing when no
+// recording is active.
+public final class ImportEvents {
+    private static final String CATEGORY = "Proxyman Log Importer";
+
+    private ImportEvents() {}
+
+    @Name("proxyman.Import")
+    @Label("Import")
+    @Category(CATEGORY)
+    @Description("One import of one or more archives, from opening the first file to the last emitted entry")
+    static final class Import extends Event {
+        @Label("File") String file;
+        @Label("Threads") int threads;
+        @Label("Files") long files;
+        @Label("Zip Entries") long zipEntries;
+        @Label("Entries") long entries;
+        @Label("Duplicates") long duplicates;
+        @Label("Skipped") long skipped;
+        @Label("Failed") long failed;
+        @Label("Cancelled") boolean cancelled;
+        @Label("Bytes Inflated") @DataAmount long bytesInflated;
+    }
+
+    @Name("proxyman.EntryFailed")
+    @Label("Entry Failed")
+    @Category(CATEGORY)
+    static final class EntryFailed extends Event {
+        @Label("Entry") String entry;
+        @Label("Error") String error;
+    }
+
+    @Name("proxyman.Materialize")
+    @Label("Materialize")
+    @Category(CATEGORY)
+    @Description("Rebuilding one request/response pair from the archive")
+    static final class Materialize extends Event {
+        @Label("Entry") String entry;
+        @Label("Message Size") @DataAmount long size;
+    }
+
+    @Name("proxyman.EdtWork")
+    @Label("EDT Work")
+    @Category(CATEGORY)
+    @Description("Importer work done on the Swing event dispatch thread")
+    static final class EdtWork extends Event {
+        @Label("Operation") String operation;
+    }
+}
@@ -0,0 +1,304 @@
+import com.google.gson.stream.JsonWriter;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Writer;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+// Counters and phase timings for one import, which may cover several archives. Parse threads,
+// the materialization path and the EDT all record into the same instance, so every counter is
+// additive and lock-free. Phase times are summed across threads and can exceed the wall-clock
+// time of a parallel import.
+public class ImportStats {
+    private static final int MAX_FAILURES_KEPT = 100;
+
+    public enum Phase {
+        INFLATE("inflate"),
+        JSON("json"),
+        BASE64("base64"),
+        ASSEMBLY("assembly"),
+        TABLE("table"),
+        EDT_FILTER("edt.filter"),
+        EDT_VIEWER("edt.viewer");
+
+        public final String label;
+
+        Phase(String label) { this.label = label; }
+    }
+
+    public final String file;
+
+    private final Instant startedAt = Instant.now();
+    private final long startNanos;
+    private volatile long wallNanos = -1;
+    private volatile boolean cancelled;
+    private volatile int threads = 1;
+
+    private final LongAdder[] phaseNanos = new LongAdder[Phase.values().length];
+    private final LongAdder[] phaseCounts = new LongAdder[Phase.values().length];
+    private final LongAdder files = new LongAdder();
+    private final LongAdder cachedFiles = new LongAdder();
+    private final LongAdder failedFiles = new LongAdder();
+    private final LongAdder zipEntries = new LongAdder();
+    private final LongAdder entries = new LongAdder();
+    private final LongAdder duplicates = new LongAdder();
+    private final LongAdder skipped = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final LongAdder materialized = new LongAdder();
+    private final LongAdder bytesInflated = new LongAdder();
+    private final LongAdder sharedBodies = new LongAdder();
+    private final LongAdder sharedBodyBytes = new LongAdder();
+    private final LongAccumulator peakBody = new LongAccumulator(Math::max, 0);
+    private final List<String> failures = new ArrayList<>();
+
+    private final ImportEvents.Import event = new ImportEvents.Import();
+
+    public ImportStats(String file) {
+        this.file = file;
+        for (int i = 0; i < phaseNanos.length; i++) {
+            phaseNanos[i] = new LongAdder();
+            phaseCounts[i] = new LongAdder();
+        }
+        event.begin();
+        startNanos = System.nanoTime();
+    }
+
+    public void add(Phase phase, long nanos) {
+        phaseNanos[phase.ordinal()].add(nanos);
+        phaseCounts[phase.ordinal()].increment();
+    }
+
+    public void since(Phase phase, long startNanos) {
+        add(phase, System.nanoTime() - startNanos);
+    }
+
+    // Runs work on the calling (EDT) thread, recording its duration and a JFR EdtWork event.
+    public void timeEdt(Phase phase, Runnable work) {
+        ImportEvents.EdtWork ev = new ImportEvents.EdtWork();
+        ev.begin();
+        long t0 = System.nanoTime();
+        try {
+            work.run();
+        } finally {
+            since(phase, t0);
+            ev.operation = phase.label;
+            ev.commit();
+        }
+    }
+
+    public long nanos(Phase phase) { return phaseNanos[phase.ordinal()].sum(); }
+
+    void threads(int threads) { this.threads = threads; }
+
+    void fileParsed(long zipEntries) {
+        files.increment();
+        this.zipEntries.add(zipEntries);
+    }
+
+    void fileFromCache(long entries) {
+        files.increment();
+        cachedFiles.increment();
+        zipEntries.add(entries);
+    }
+
+    void fileFailed(String fileName, Exception ex) {
+        failedFiles.increment();
+        synchronized (failures) {
+            if (failures.size() < MAX_FAILURES_KEPT) failures.add(fileName + ": " + ex);
+        }
+    }
+
+    void entryEmitted() { entries.increment(); }
+
+    void entryDuplicate() { duplicates.increment(); }
+
+    void entrySkipped() { skipped.increment(); }
+
+    void entryFailed(String entryName, Exception ex) {
+        failed.increment();
+        String message = entryName + ": " + ex;
+        synchronized (failures) {
+            if (failures.size() < MAX_FAILURES_KEPT) failures.add(message);
+        }
+
+        ImportEvents.EntryFailed ev = new ImportEvents.EntryFailed();
+        if (ev.shouldCommit()) {
+            ev.entry = entryName;
+            ev.error = String.valueOf(ex);
+            ev.commit();
+        }
+    }
+
+    void materialized(long bodyBytes) {
+        materialized.increment();
+        peakBody.accumulate(bodyBytes);
+    }
+
+    // Bodies the import cache wrote once and referenced again from later messages.
+    void bodiesShared(long bodies, long bytes) {
+        sharedBodies.add(bodies);
+        sharedBodyBytes.add(bytes);
+    }
+
+    void finish(boolean cancelled) {
+        if (wallNanos >= 0) return;
+        this.cancelled = cancelled;
+        wallNanos = System.nanoTime() - startNanos;
+
+        event.end();
+        if (event.shouldCommit()) {
+            event.file = file;
+            event.threads = threads;
+            event.files = files.sum();
+            event.zipEntries = zipEntries.sum();
+            event.entries = entries.sum();
+            event.duplicates = duplicates.sum();
+            event.skipped = skipped.sum();
+            event.failed = failed.sum();
+            event.cancelled = cancelled;
+            event.bytesInflated = bytesInflated.sum();
+            event.commit();
+        }
+    }
+
+    public long entries() { return entries.sum(); }
+
+    public long duplicates() { return duplicates.sum(); }
+
+    public long skipped() { return skipped.sum(); }
+
+    public long failed() { return failed.sum(); }
+
+    public long sharedBodyBytes() { return sharedBodyBytes.sum(); }
+
+    public List<String> failures() {
+        synchronized (failures) {
+            return new ArrayList<>(failures);
+        }
+    }
+
+    public long wallNanos() {
+        long wall = wallNanos;
+        return wall >= 0 ? wall : System.nanoTime() - startNanos;
+    }
+
+    // One line for the status row, e.g. "imported in 2.41 s (inflate 0.80 s, json 1.20 s, table 0.10 s), 1 failed".
+    public String summary() {
+        long fileCount = files.sum();
+        long cached = cachedFiles.sum();
+
+        StringBuilder sb = new StringBuilder();
+        if (fileCount > 0 && cached == fileCount) {
+            sb.append("loaded from cache in ").append(seconds(wallNanos()));
+            sb.append(" (table ").append(seconds(nanos(Phase.TABLE))).append(')');
+        } else {
+            sb.append(wallNanos >= 0 ? "imported " : "importing ");
+            if (fileCount > 1) sb.append(fileCount).append(" files ");
+            sb.append(wallNanos >= 0 ? "in " : "for ").append(seconds(wallNanos()));
+            sb.append(" (inflate ").append(seconds(nanos(Phase.INFLATE)));
+            sb.append(", json ").append(seconds(nanos(Phase.JSON)));
+            sb.append(", table ").append(seconds(nanos(Phase.TABLE))).append(')');
+            if (cached > 0) sb.append(", ").append(cached).append(" from cache");
+        }
+        if (duplicates() > 0) sb.append(", ").append(duplicates()).append(" duplicates");
+        if (skipped() > 0) sb.append(", ").append(skipped()).append(" skipped");
+        if (failed() > 0) sb.append(", ").append(failed()).append(" failed");
+        if (failedFiles.sum() > 0) sb.append(", ").append(failedFiles.sum()).append(" files unreadable");
+        if (sharedBodyBytes() > 0) {
+            sb.append(", ").append(String.format(Locale.ROOT, "%.1f MB", sharedBodyBytes() / (double) (1 << 20)))
+                    .append(" saved by ").append(sharedBodies.sum()).append(" repeated bodies");
+        }
+        return sb.toString();
+    }
+
+    public void writeJson(Writer out) throws IOException {
+        JsonWriter json = new JsonWriter(out);
+        json.setIndent("  ");
+        json.beginObject();
+        json.name("file").value(file);
+        json.name("startedAt").value(startedAt.toString());
+        json.name("wallMillis").value(wallNanos() / 1_000_000L);
+        json.name("finished").value(wallNanos >= 0);
+        json.name("cancelled").value(cancelled);
+        json.name("threads").value(threads);
+        json.name("files").value(files.sum());
+        json.name("cachedFiles").value(cachedFiles.sum());
+        json.name("failedFiles").value(failedFiles.sum());
+        json.name("zipEntries").value(zipEntries.sum());
+        json.name("entries").value(entries.sum());
+        json.name("duplicates").value(duplicates.sum());
+        json.name("skipped").value(skipped.sum());
+        json.name("failed").value(failed.sum());
+        json.name("materialized").value(materialized.sum());
+        json.name("bytesInflated").value(bytesInflated.sum());
+        json.name("peakBodyBytes").value(peakBody.get());
+        json.name("sharedBodies").value(sharedBodies.sum());
+        json.name("sharedBodyBytes").value(sharedBodyBytes.sum());
+
+        json.name("phases").beginObject();
+        for (Phase phase : Phase.values()) {
+            json.name(phase.label).beginObject();
+            json.name("millis").value(nanos(phase) / 1_000_000.0);
+            json.name("count").value(phaseCounts[phase.ordinal()].sum());
+            json.endObject();
+        }
+        json.endObject();
+
+        json.name("failures").beginArray();
+        for (String failure : failures()) json.value(failure);
+        json.endArray();
+
+        json.endObject();
+        json.flush();
+    }
+
+    private static String seconds(long nanos) {
+        return String.format(Locale.ROOT, "%.2f s", nanos / 1e9);
+    }
+
+    TimedInputStream inflating(InputStream in) {
+        return new TimedInputStream(in, this);
+    }
+
+    // Attributes time spent pulling bytes out of the archive (inflating, for deflated entries)
+    // to INFLATE, so a reader on top can subtract it from its own total.
+    static final class TimedInputStream extends FilterInputStream {
+        private final ImportStats stats;
+        long nanos;
+
+        TimedInputStream(InputStream in, ImportStats stats) {
+            super(in);
+            this.stats = stats;
+        }
+
+        @Override
+        public int read() throws IOException {
+            long t0 = System.nanoTime();
+            int b = super.read();
+            nanos += System.nanoTime() - t0;
+            if (b >= 0) stats.bytesInflated.increment();
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            long t0 = System.nanoTime();
+            int n = super.read(b, off, len);
+            nanos += System.nanoTime() - t0;
+            if (n > 0) stats.bytesInflated.add(n);
+            return n;
+        }
+
+        @Override
+        public void close() throws IOException {
+            super.close();
+            stats.add(Phase.INFLATE, nanos);
+        }
+    }
+}
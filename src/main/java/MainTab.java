@@ -2,44 +2,120 @@ import burp.api.montoya.MontoyaApi;
 import burp.api.montoya.http.message.HttpRequestResponse;
 
 import javax.swing.*;
+import javax.swing.Timer;
 import javax.swing.border.EmptyBorder;
 import javax.swing.event.DocumentEvent;
 import javax.swing.event.DocumentListener;
-import javax.swing.table.DefaultTableModel;
+import javax.swing.tree.TreePath;
 import java.awt.*;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
 import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class MainTab extends JPanel {
+    private static final int FILTER_DEBOUNCE_MS = 150;
+
+    private static final String BULK_ALL = "All rows";
+    private static final String BULK_FILTERED = "Filtered rows";
+    private static final String BULK_SELECTED = "Selected rows";
+
     private final MontoyaApi api;
 
-    private final JButton loadButton = new JButton("Load .proxymanlogv2");
-    private final JButton addAllToSiteMapButton = new JButton("Add ALL to Site Map");
-    private final JButton sendAllToRepeaterButton = new JButton("Send ALL to Repeater");
+    private final JButton loadButton = new JButton("Load capture…");
+    private final JCheckBox appendMode = new JCheckBox("Append");
+    private final JButton cancelButton = new JButton("Cancel");
+    private final JButton exportStatsButton = new JButton("Export stats…");
+    private final JButton clearCacheButton = new JButton("Clear cache");
+    private final JButton addAllToSiteMapButton = new JButton("Add to Site Map");
+    private final JButton sendAllToRepeaterButton = new JButton("Send to Repeater");
+    private final JButton exportHarButton = new JButton("Export HAR…");
+
+    private final JComboBox<String> bulkScope = new JComboBox<>(new String[]{BULK_ALL, BULK_FILTERED, BULK_SELECTED});
+    private final JCheckBox siteMapScopeOnly = new JCheckBox("In scope only");
+    private final JCheckBox siteMapSkipSeen = new JCheckBox("Skip added", true);
+    private final JCheckBox siteMapCompareBodies = new JCheckBox("Compare bodies");
+    private final JSpinner bulkBatchSize = new JSpinner(new SpinnerNumberModel(50, 1, 10_000, 10));
+    private final JSpinner bulkRate = new JSpinner(new SpinnerNumberModel(200, 0, 100_000, 50));
 
     private final JTextField filterField = new JTextField(28);
-    private final JCheckBox autoOpenTabs = new JCheckBox("Open tabs for all requests", true);
+    private final JLabel filterStatus = new JLabel();
+    private final JSpinner maxPinnedTabs = new JSpinner(new SpinnerNumberModel(20, 1, 200, 1));
+    private final JSpinner parseThreads = new JSpinner(new SpinnerNumberModel(
+            Math.max(1, Runtime.getRuntime().availableProcessors() - 1), 1, 64, 1));
+    private final JSpinner cacheLimitMb = new JSpinner(new SpinnerNumberModel(2048, 0, 1_048_576, 256));
+    private final JSpinner spillKb = new JSpinner(new SpinnerNumberModel(128, 0, 1_048_576, 64));
+    private final JCheckBox decodeBodies = new JCheckBox("Decode bodies", true);
 
     private final JLabel fileLabel = new JLabel("No file loaded");
     private final JLabel countLabel = new JLabel("0 requests");
+    private final JLabel statsLabel = new JLabel("");
     private final JProgressBar progressBar = new JProgressBar();
 
-    private final DefaultTableModel tableModel = new DefaultTableModel(
-            new Object[]{"#", "Method", "Host", "Path", "Status"}, 0
-    ) {
-        @Override public boolean isCellEditable(int row, int column) { return false; }
-    };
+    private final List<ProxymanParser.ParsedEntry> allEntries = new ArrayList<>();
+    private final EntryTableModel tableModel = new EntryTableModel(allEntries);
 
     private final JTable table = new JTable(tableModel);
+    private final EndpointTreeModel endpoints = new EndpointTreeModel();
+    private final JTree endpointTree = new JTree(endpoints) {
+        @Override
+        public String getToolTipText(MouseEvent e) {
+            TreePath path = getPathForLocation(e.getX(), e.getY());
+            return path != null ? ((EndpointTreeModel.Node) path.getLastPathComponent()).details() : null;
+        }
+    };
+    // Selected endpoint the table is narrowed to; null for all rows.
+    private EndpointTreeModel.Node endpointNode;
     private final JTabbedPane requestTabs = new JTabbedPane(JTabbedPane.TOP, JTabbedPane.SCROLL_TAB_LAYOUT);
-
-    private final List<ProxymanParser.ParsedEntry> allEntries = new ArrayList<>();
-    private final List<Integer> filteredIndexMap = new ArrayList<>(); // table row -> allEntries index
+    private final RequestTab viewer;
+    private final LinkedHashMap<ProxymanParser.ParsedEntry, RequestTab> pinnedTabs = new LinkedHashMap<>(16, 0.75f, true);
+
+    private final Set<ArchiveSource> sources = new HashSet<>();
+    private final Set<String> loadedFiles = new HashSet<>();
+    // Written by the load worker's merge loop, read and reset on the EDT between loads.
+    private final Set<Long> fingerprints = ConcurrentHashMap.newKeySet();
+    private boolean rebuildFingerprints;
+    private final FilterIndex filterIndex = new FilterIndex();
+    private final BodyIndex bodyIndex = new BodyIndex(256L * 1024 * 1024);
+
+    private final Timer filterDebounce = new Timer(FILTER_DEBOUNCE_MS, e -> runFilter());
+    private SwingWorker<FilterIndex.Result, Void> filterWorker;
+    private SwingWorker<Void, Integer> scanWorker;
+    private FilterQuery query = FilterQuery.EMPTY;
+    private int filterGeneration;
 
     private final AtomicBoolean isLoading = new AtomicBoolean(false);
+    private SwingWorker<Void, ProxymanParser.ParsedEntry> loadWorker;
+    // The running Send to Repeater / Add to Site Map / HAR export job; one at a time.
+    private SwingWorker<?, ?> bulkJob;
+    private ImportStats stats = new ImportStats(null);
+
+    // Cache writes and maintenance run one at a time, off the EDT.
+    private final ImportCache importCache = new ImportCache(ImportCache.defaultDir(), 2048L * 1024 * 1024);
+    private final ExecutorService cacheExecutor = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "proxyman-cache");
+        t.setDaemon(true);
+        return t;
+    });
+    private volatile int cacheGeneration;
 
     public MainTab(MontoyaApi api) {
         super(new BorderLayout(10, 10));
@@ -57,10 +133,8 @@ public class MainTab extends JPanel {
         toolbar.add(loadButton, c);
 
         c.gridx++;
-        toolbar.add(sendAllToRepeaterButton, c);
-
-        c.gridx++;
-        toolbar.add(addAllToSiteMapButton, c);
+        appendMode.setToolTipText("Add to the current table instead of replacing it; files already loaded are skipped");
+        toolbar.add(appendMode, c);
 
         c.gridx++;
         toolbar.add(new JSeparator(SwingConstants.VERTICAL), c);
@@ -71,56 +145,155 @@ public class MainTab extends JPanel {
         c.gridx++;
         c.fill = GridBagConstraints.HORIZONTAL;
         c.weightx = 1.0;
+        filterField.setToolTipText("<html>Space-separated terms that must all match; prefix one with - to negate it:<br>"
+                + "status&gt;=500 &nbsp;status:5xx &nbsp;host:*.api.example.com &nbsp;method:POST &nbsp;path:/v1/* &nbsp;type:json<br>"
+                + "size&gt;10k &nbsp;time&gt;=500 &nbsp;source:run1.har &nbsp;host~cdn &nbsp;body~\"token\"<br>"
+                + "Plain words match method, host, path and status. body~ scans the messages in the background.</html>");
         toolbar.add(filterField, c);
 
         c.gridx++;
         c.weightx = 0.0;
         c.fill = GridBagConstraints.NONE;
-        toolbar.add(autoOpenTabs, c);
+        toolbar.add(filterStatus, c);
+
+        c.gridx++;
+        toolbar.add(new JLabel("Max pinned tabs:"), c);
+
+        c.gridx++;
+        maxPinnedTabs.setToolTipText("Least recently used pinned tabs are closed beyond this count");
+        toolbar.add(maxPinnedTabs, c);
+
+        c.gridx++;
+        toolbar.add(new JLabel("Parse threads:"), c);
+
+        c.gridx++;
+        parseThreads.setToolTipText("Number of threads decoding Proxyman zip entries (1 = sequential)");
+        toolbar.add(parseThreads, c);
+
+        c.gridx++;
+        toolbar.add(new JLabel("Cache (MB):"), c);
+
+        c.gridx++;
+        cacheLimitMb.setToolTipText("Size cap of the on-disk import cache in " + ImportCache.defaultDir() + " (0 = off)");
+        toolbar.add(cacheLimitMb, c);
+
+        c.gridx++;
+        toolbar.add(clearCacheButton, c);
+
+        c.gridx++;
+        toolbar.add(new JLabel("Spill (KB):"), c);
+
+        c.gridx++;
+        spillKb.setToolTipText("Messages of at least this size are kept in a temp file instead of the heap once viewed (0 = off)");
+        toolbar.add(spillKb, c);
+
+        c.gridx++;
+        decodeBodies.setToolTipText("Show and send gzip/deflate bodies inflated, with Content-Length adjusted (untick for the wire bytes)");
+        toolbar.add(decodeBodies, c);
+
+        JPanel bulkBar = new JPanel(new FlowLayout(FlowLayout.LEFT, 8, 0));
+        bulkBar.setBorder(new EmptyBorder(0, 0, 6, 0));
+        bulkBar.add(new JLabel("Bulk:"));
+        bulkBar.add(bulkScope);
+        bulkBar.add(sendAllToRepeaterButton);
+        bulkBar.add(addAllToSiteMapButton);
+        siteMapScopeOnly.setToolTipText("Add to Site Map: skip requests outside Burp's target scope");
+        bulkBar.add(siteMapScopeOnly);
+        siteMapSkipSeen.setToolTipText("Add to Site Map: skip requests already added this session (method, host, path, sorted query)");
+        bulkBar.add(siteMapSkipSeen);
+        siteMapCompareBodies.setToolTipText("Add to Site Map: requests that differ only in their body count as different");
+        bulkBar.add(siteMapCompareBodies);
+        exportHarButton.setToolTipText("Stream the rows to a HAR 1.2 file");
+        bulkBar.add(exportHarButton);
+        bulkBar.add(new JLabel("Batch size:"));
+        bulkBar.add(bulkBatchSize);
+        bulkBar.add(new JLabel("Max items/s:"));
+        bulkRate.setToolTipText("0 = unlimited");
+        bulkBar.add(bulkRate);
 
         JPanel statusRow = new JPanel(new BorderLayout(10, 0));
         JPanel leftStatus = new JPanel(new FlowLayout(FlowLayout.LEFT, 10, 0));
         leftStatus.add(fileLabel);
         leftStatus.add(new JLabel("•"));
         leftStatus.add(countLabel);
+        leftStatus.add(statsLabel);
+        exportStatsButton.setToolTipText("Save phase timings and counters of the last import as JSON");
+        exportStatsButton.setEnabled(false);
+        leftStatus.add(exportStatsButton);
 
         progressBar.setStringPainted(true);
         progressBar.setString("");
         progressBar.setVisible(false);
 
+        cancelButton.setVisible(false);
+
+        JPanel rightStatus = new JPanel(new FlowLayout(FlowLayout.RIGHT, 10, 0));
+        rightStatus.add(progressBar);
+        rightStatus.add(cancelButton);
+
         statusRow.add(leftStatus, BorderLayout.WEST);
-        statusRow.add(progressBar, BorderLayout.EAST);
+        statusRow.add(rightStatus, BorderLayout.EAST);
 
         JPanel north = new JPanel(new BorderLayout());
         north.add(toolbar, BorderLayout.NORTH);
+        north.add(bulkBar, BorderLayout.CENTER);
         north.add(statusRow, BorderLayout.SOUTH);
 
         add(north, BorderLayout.NORTH);
 
         table.setFillsViewportHeight(true);
-        table.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
+        table.setSelectionMode(ListSelectionModel.MULTIPLE_INTERVAL_SELECTION);
         table.setAutoCreateRowSorter(true);
 
         JScrollPane tableScroll = new JScrollPane(table);
         tableScroll.setBorder(BorderFactory.createTitledBorder("Requests"));
 
         requestTabs.setBorder(BorderFactory.createTitledBorder("Request Details"));
+        viewer = new RequestTab(api);
+        viewer.setOnPin(this::pinEntryTab);
+        requestTabs.addTab("Selected", viewer);
 
-        JSplitPane split = new JSplitPane(JSplitPane.HORIZONTAL_SPLIT, tableScroll, requestTabs);
-        split.setResizeWeight(0.45);
-        split.setDividerLocation(520);
+        endpointTree.setShowsRootHandles(true);
+        ToolTipManager.sharedInstance().registerComponent(endpointTree);
+        JScrollPane endpointScroll = new JScrollPane(endpointTree);
+        endpointScroll.setBorder(BorderFactory.createTitledBorder("Endpoints"));
+
+        JSplitPane browse = new JSplitPane(JSplitPane.HORIZONTAL_SPLIT, endpointScroll, tableScroll);
+        browse.setResizeWeight(0.3);
+        browse.setDividerLocation(240);
+
+        JSplitPane split = new JSplitPane(JSplitPane.HORIZONTAL_SPLIT, browse, requestTabs);
+        split.setResizeWeight(0.55);
+        split.setDividerLocation(760);
 
         add(split, BorderLayout.CENTER);
 
         sendAllToRepeaterButton.setEnabled(false);
         addAllToSiteMapButton.setEnabled(false);
+        exportHarButton.setEnabled(false);
 
         try { api.userInterface().applyThemeToComponent(this); } catch (Exception ignored) {}
 
         loadButton.addActionListener(e -> onLoad());
+        cancelButton.addActionListener(e -> onCancel());
+        exportStatsButton.addActionListener(e -> onExportStats());
+        clearCacheButton.addActionListener(e -> cacheExecutor.execute(importCache::clear));
+        cacheLimitMb.addChangeListener(e -> {
+            long limit = ((Integer) cacheLimitMb.getValue()) * 1024L * 1024L;
+            cacheExecutor.execute(() -> importCache.setMaxBytes(limit));
+        });
+        spillKb.addChangeListener(e -> BodyStore.SHARED.setThreshold(((Integer) spillKb.getValue()) * 1024L));
+        decodeBodies.addActionListener(e -> {
+            DecodedMessages.SHARED.setEnabled(decodeBodies.isSelected());
+            MessageCache.SHARED.clear();
+            viewer.reload();
+            for (RequestTab tab : pinnedTabs.values()) tab.reload();
+        });
         sendAllToRepeaterButton.addActionListener(e -> onSendAllToRepeater());
         addAllToSiteMapButton.addActionListener(e -> onAddAllToSiteMap());
+        exportHarButton.addActionListener(e -> onExportHar());
 
+        filterDebounce.setRepeats(false);
         filterField.getDocument().addDocumentListener(new DocumentListener() {
             @Override public void insertUpdate(DocumentEvent e) { applyFilter(); }
             @Override public void removeUpdate(DocumentEvent e) { applyFilter(); }
@@ -132,27 +305,60 @@ public class MainTab extends JPanel {
             int viewRow = table.getSelectedRow();
             if (viewRow < 0) return;
 
-            int modelRow = table.convertRowIndexToModel(viewRow);
-            if (modelRow < 0 || modelRow >= filteredIndexMap.size()) return;
+            int idx = tableModel.entryIndexAt(table.convertRowIndexToModel(viewRow));
+            if (idx < 0) return;
+
+            stats.timeEdt(ImportStats.Phase.EDT_VIEWER, () -> viewer.setEntry(allEntries.get(idx)));
+            requestTabs.setSelectedComponent(viewer);
+        });
+
+        endpointTree.addTreeSelectionListener(e -> {
+            TreePath path = endpointTree.getSelectionPath();
+            EndpointTreeModel.Node node = path != null && path.getPathCount() > 1 ? (EndpointTreeModel.Node) path.getLastPathComponent() : null;
+            if (node == endpointNode) return;
+            endpointNode = node;
+            runFilter();
+        });
 
-            int idx = filteredIndexMap.get(modelRow);
-            openEntryTab(idx);
+        table.addMouseListener(new MouseAdapter() {
+            @Override
+            public void mouseClicked(MouseEvent e) {
+                if (e.getClickCount() != 2) return;
+                int viewRow = table.rowAtPoint(e.getPoint());
+                if (viewRow < 0) return;
+                int idx = tableModel.entryIndexAt(table.convertRowIndexToModel(viewRow));
+                if (idx >= 0) pinEntryTab(allEntries.get(idx));
+            }
         });
+
+        maxPinnedTabs.addChangeListener(e -> evictPinnedTabs());
     }
 
     private void onLoad() {
-        if (isLoading.get()) return;
+        if (isLoading.get() || (bulkJob != null && !bulkJob.isDone())) return;
 
         JFileChooser chooser = new JFileChooser();
-        chooser.setDialogTitle("Select a .proxymanlogv2 file");
-        chooser.setFileSelectionMode(JFileChooser.FILES_ONLY);
+        chooser.setDialogTitle("Select captures (" + CaptureParsers.extensions() + ") or folders");
+        chooser.setFileSelectionMode(JFileChooser.FILES_AND_DIRECTORIES);
+        chooser.setMultiSelectionEnabled(true);
 
         int result = chooser.showOpenDialog(this);
         if (result != JFileChooser.APPROVE_OPTION) return;
 
-        File file = chooser.getSelectedFile();
-        if (file == null || !file.exists()) {
-            fileLabel.setText("File not found");
+        File[] selection = chooser.getSelectedFiles();
+        Arrays.sort(selection, Comparator.comparing(File::getName));
+        List<File> files = BatchImport.expand(selection);
+
+        boolean append = appendMode.isSelected();
+        if (append) {
+            // Files already in the table are not parsed again.
+            files.removeIf(f -> loadedFiles.contains(fileKey(f)));
+            if (files.isEmpty()) {
+                countLabel.setText(allEntries.size() + " requests • selection already loaded");
+                return;
+            }
+        } else if (files.isEmpty()) {
+            fileLabel.setText("No captures found (" + CaptureParsers.extensions() + ")");
             return;
         }
 
@@ -160,153 +366,388 @@ public class MainTab extends JPanel {
         progressBar.setVisible(true);
         progressBar.setIndeterminate(true);
         progressBar.setString("Loading…");
+        cancelButton.setVisible(true);
+        cancelButton.setEnabled(true);
 
         loadButton.setEnabled(false);
         sendAllToRepeaterButton.setEnabled(false);
         addAllToSiteMapButton.setEnabled(false);
+        exportHarButton.setEnabled(false);
 
-        tableModel.setRowCount(0);
-        requestTabs.removeAll();
-        allEntries.clear();
-        filteredIndexMap.clear();
+        if (!append) clearEntries();
+        if (rebuildFingerprints) {
+            fingerprints.clear();
+            for (ProxymanParser.ParsedEntry e : allEntries) fingerprints.add(e.fingerprint);
+            rebuildFingerprints = false;
+        }
 
-        fileLabel.setText(file.getName());
-        countLabel.setText("0 requests");
+        String label = files.size() == 1 ? files.get(0).getName() : files.size() + " files";
+        fileLabel.setText(append && !loadedFiles.isEmpty() ? fileLabel.getText() + " + " + label : label);
+        countLabel.setText(allEntries.size() + " requests");
+        statsLabel.setText("");
+        exportStatsButton.setEnabled(false);
+
+        int threads = (Integer) parseThreads.getValue();
+        ImportStats importStats = new ImportStats(label);
+        importStats.threads(threads);
+        stats = importStats;
+
+        loadWorker = new SwingWorker<>() {
+            private volatile int done;
+            private volatile int total;
 
-        SwingWorker<List<ProxymanParser.ParsedEntry>, Void> worker = new SwingWorker<>() {
             @Override
-            protected List<ProxymanParser.ParsedEntry> doInBackground() throws Exception {
-                return ProxymanParser.parse(file);
+            protected Void doInBackground() throws Exception {
+                SwingWorker<Void, ProxymanParser.ParsedEntry> worker = this;
+                BatchImport.run(files, threads, importCache, fingerprints, importStats, new BatchImport.Listener() {
+                    @Override public void onEntry(ProxymanParser.ParsedEntry entry) { publish(entry); }
+
+                    @Override public void onProgress(int d, int t) {
+                        done = d;
+                        total = t;
+                    }
+
+                    @Override public boolean isCancelled() { return worker.isCancelled(); }
+
+                    @Override
+                    public void onFileDone(File file, List<ProxymanParser.ParsedEntry> entries, boolean fromCache, Exception error) {
+                        SwingUtilities.invokeLater(() -> onArchiveLoaded(file, entries, fromCache, error));
+                    }
+                });
+                return null;
+            }
+
+            @Override
+            protected void process(List<ProxymanParser.ParsedEntry> chunks) {
+                if (isCancelled()) {
+                    // Dropped rows still hold their archive open; keep it so clearEntries closes it.
+                    for (ProxymanParser.ParsedEntry e : chunks) sources.add(e.source);
+                    return;
+                }
+                importStats.timeEdt(ImportStats.Phase.TABLE, () -> {
+                    int from = allEntries.size();
+                    allEntries.addAll(chunks);
+                    for (int i = 0; i < chunks.size(); i++) {
+                        ProxymanParser.ParsedEntry e = chunks.get(i);
+                        sources.add(e.source);
+                        filterIndex.add(e);
+                        bodyIndex.add(from + i, e);
+                    }
+                    endpoints.addAll(from, chunks);
+                    if (from == 0) endpointTree.expandRow(0);
+                    appendFilteredRows(from);
+                });
+
+                countLabel.setText(allEntries.size() + " requests");
+                progressBar.setIndeterminate(false);
+                progressBar.setMaximum(Math.max(1, total));
+                progressBar.setValue(done);
+                progressBar.setString(done + " of " + total + " entries");
             }
 
             @Override
             protected void done() {
                 try {
-                    List<ProxymanParser.ParsedEntry> parsed = get();
-                    allEntries.addAll(parsed);
-                    applyFilter();
-
-                    countLabel.setText(allEntries.size() + " requests");
+                    if (isCancelled()) {
+                        countLabel.setText(allEntries.size() + " requests (import cancelled)");
+                        rebuildFingerprints = true;
+                    } else {
+                        get();
+                        countLabel.setText(allEntries.size() + " requests");
+                    }
                     sendAllToRepeaterButton.setEnabled(!allEntries.isEmpty());
                     addAllToSiteMapButton.setEnabled(!allEntries.isEmpty());
-
-                    if (autoOpenTabs.isSelected()) {
-                        openAllTabsInBackground();
-                    }
+                    exportHarButton.setEnabled(!allEntries.isEmpty());
                 } catch (Exception ex) {
                     api.logging().logToError("Failed to load proxyman log: " + ex.getMessage());
                     fileLabel.setText("Failed to load (see Extender errors)");
                 } finally {
+                    importStats.finish(isCancelled());
+                    for (String failure : importStats.failures()) {
+                        api.logging().logToError("Skipped " + failure);
+                    }
+                    statsLabel.setText("• " + importStats.summary());
+                    exportStatsButton.setEnabled(true);
+
                     progressBar.setIndeterminate(false);
                     progressBar.setVisible(false);
                     progressBar.setString("");
+                    cancelButton.setVisible(false);
                     loadButton.setEnabled(true);
                     isLoading.set(false);
                 }
             }
         };
 
-        worker.execute();
+        loadWorker.execute();
     }
 
-    private void openAllTabsInBackground() {
-        progressBar.setVisible(true);
-        progressBar.setIndeterminate(false);
-        progressBar.setMinimum(0);
-        progressBar.setMaximum(Math.max(1, allEntries.size()));
-        progressBar.setValue(0);
-        progressBar.setString("Creating tabs…");
+    // Runs on the EDT once every entry of an archive went through the merge. entries includes
+    // rows dropped as duplicates, so the cached copy of the archive stays complete.
+    private void onArchiveLoaded(File file, List<ProxymanParser.ParsedEntry> entries, boolean fromCache, Exception error) {
+        if (error != null) return;
+        loadedFiles.add(fileKey(file));
+        if (entries.isEmpty()) return;
+        sources.add(entries.get(0).source);
+        if (!fromCache) storeInCache(entries);
+    }
 
-        SwingWorker<Void, Integer> tabWorker = new SwingWorker<>() {
-            @Override
-            protected Void doInBackground() {
-                for (int i = 0; i < allEntries.size(); i++) {
-                    final int idx = i;
-                    SwingUtilities.invokeLater(() -> openEntryTab(idx));
-                    publish(i + 1);
+    private static String fileKey(File file) {
+        String path;
+        try {
+            path = file.getCanonicalPath();
+        } catch (Exception ex) {
+            path = file.getAbsolutePath();
+        }
+        return path + "|" + file.length() + "|" + file.lastModified();
+    }
+
+    // Writes a freshly imported archive to the on-disk cache in the background. Clearing the
+    // table or unloading the extension abandons the write.
+    private void storeInCache(List<ProxymanParser.ParsedEntry> snapshot) {
+        if (!importCache.isEnabled()) return;
+        int generation = cacheGeneration;
+        cacheExecutor.execute(() -> {
+            try {
+                importCache.store(snapshot, () -> generation != cacheGeneration);
+                // Bodies shared while writing the cache are reported with the import they belong to.
+                ImportStats importStats = snapshot.get(0).source.stats;
+                SwingUtilities.invokeLater(() -> {
+                    if (importStats == stats && !isLoading.get()) statsLabel.setText("• " + importStats.summary());
+                });
+            } catch (Exception ex) {
+                if (generation == cacheGeneration) {
+                    api.logging().logToError("Failed to cache " + snapshot.get(0).source.file.getName() + ": " + ex.getMessage());
                 }
-                return null;
             }
+        });
+    }
 
+    private void clearEntries() {
+        cacheGeneration++;
+        filterGeneration++;
+        if (filterWorker != null) filterWorker.cancel(false);
+        if (scanWorker != null) scanWorker.cancel(false);
+
+        tableModel.clear();
+        viewer.setEntry(null);
+        for (RequestTab tab : pinnedTabs.values()) {
+            requestTabs.remove(tab);
+            tab.dispose();
+        }
+        pinnedTabs.clear();
+        allEntries.clear();
+        filterIndex.clear();
+        bodyIndex.clear();
+        endpointNode = null;
+        endpoints.clear();
+        fingerprints.clear();
+        loadedFiles.clear();
+        rebuildFingerprints = false;
+
+        for (ArchiveSource source : sources) source.close();
+        sources.clear();
+        BodyStore.SHARED.clear();
+        DecodedMessages.SHARED.clear();
+    }
+
+    public void dispose() {
+        if (loadWorker != null) loadWorker.cancel(false);
+        if (bulkJob != null) bulkJob.cancel(false);
+        clearEntries();
+        bodyIndex.close();
+        cacheExecutor.shutdownNow();
+    }
+
+    private void onExportStats() {
+        JFileChooser chooser = new JFileChooser();
+        chooser.setDialogTitle("Export import stats");
+        chooser.setSelectedFile(new File("proxyman-import-stats.json"));
+        if (chooser.showSaveDialog(this) != JFileChooser.APPROVE_OPTION) return;
+
+        File out = chooser.getSelectedFile();
+        try (Writer w = new OutputStreamWriter(new FileOutputStream(out), StandardCharsets.UTF_8)) {
+            stats.writeJson(w);
+        } catch (Exception ex) {
+            api.logging().logToError("Export stats failed: " + ex.getMessage());
+        }
+    }
+
+    private void onCancel() {
+        SwingWorker<?, ?> active = bulkJob != null && !bulkJob.isDone() ? bulkJob : loadWorker;
+        if (active == null || active.isDone()) return;
+        cancelButton.setEnabled(false);
+        progressBar.setString("Cancelling…");
+        active.cancel(false);
+    }
+
+    private void applyFilter() {
+        filterDebounce.restart();
+    }
+
+    // Compiles the query, runs it against the precomputed index off the EDT and swaps the table
+    // contents in with a single model event; rows only their bodies can decide follow from
+    // scanBodies. Results from superseded queries or cleared tables are dropped.
+    private void runFilter() {
+        if (filterWorker != null) filterWorker.cancel(false);
+        if (scanWorker != null) scanWorker.cancel(false);
+
+        FilterQuery q;
+        try {
+            q = FilterQuery.parse(filterField.getText());
+        } catch (IllegalArgumentException ex) {
+            filterStatus.setText(ex.getMessage());
+            return;
+        }
+        query = q;
+        filterStatus.setText("");
+        viewer.setSearchExpression(q.bodyText());
+        for (RequestTab tab : pinnedTabs.values()) tab.setSearchExpression(q.bodyText());
+        int generation = ++filterGeneration;
+        int snapshot = allEntries.size();
+        BitSet within = endpointNode != null ? endpointNode.rowSet(snapshot) : null;
+
+        filterWorker = new SwingWorker<>() {
             @Override
-            protected void process(List<Integer> chunks) {
-                int v = chunks.get(chunks.size() - 1);
-                progressBar.setValue(v);
+            protected FilterIndex.Result doInBackground() {
+                return filterIndex.search(q, snapshot, within, bodyIndex.lookup(q), this::isCancelled);
             }
 
             @Override
             protected void done() {
-                progressBar.setVisible(false);
-                progressBar.setString("");
+                if (isCancelled() || generation != filterGeneration) return;
+                try {
+                    FilterIndex.Result result = get();
+                    if (result == null) return;
+                    filterStatus.setToolTipText(bodyIndex.summary());
+                    stats.timeEdt(ImportStats.Phase.EDT_FILTER, () -> setFilteredRows(q, result.matched, snapshot));
+                    if (result.scan.length > 0) scanBodies(q, result.scan, generation);
+                    else filterStatus.setText(q.isEmpty() && within == null ? "" : tableModel.getRowCount() + " shown");
+                } catch (Exception ex) {
+                    api.logging().logToError("Filter failed: " + ex.getMessage());
+                }
             }
         };
-        tabWorker.execute();
+        filterWorker.execute();
     }
 
-    private void applyFilter() {
-        String q = filterField.getText() == null ? "" : filterField.getText().trim().toLowerCase(Locale.ROOT);
+    // Rebuilds the candidates' messages on the decode pool and streams the rows that match into
+    // the table as they are found; the finished result is put back in entry order.
+    private void scanBodies(FilterQuery q, int[] candidates, int generation) {
+        filterStatus.setText("Scanning 0 of " + candidates.length + "…");
 
-        tableModel.setRowCount(0);
-        filteredIndexMap.clear();
+        scanWorker = new SwingWorker<>() {
+            private final AtomicInteger done = new AtomicInteger();
 
-        for (int i = 0; i < allEntries.size(); i++) {
-            ProxymanParser.ParsedEntry e = allEntries.get(i);
+            @Override
+            protected Void doInBackground() throws InterruptedException {
+                DecodedMessages.forEach(candidates.length, i -> {
+                    int row = candidates[i];
+                    ProxymanParser.ParsedEntry e = filterIndex.entry(row);
+                    try {
+                        ProxymanParser.RawMessages wire = e.source.materializeRaw(e);
+                        if (q.testScanned(e, filterIndex.text(row), wire, DecodedMessages.SHARED.view(e, wire))) publish(row);
+                    } catch (Exception ex) {
+                        // An entry that can no longer be rebuilt does not match.
+                    }
+                    done.incrementAndGet();
+                }, this::isCancelled);
+                return null;
+            }
 
-            String statusText = extractStatusFromResponse(e.response);
-            String rowText = (e.method + " " + e.host + " " + e.path + " " + statusText).toLowerCase(Locale.ROOT);
+            @Override
+            protected void process(List<Integer> chunks) {
+                if (isCancelled() || generation != filterGeneration) return;
+                int[] rows = new int[chunks.size()];
+                for (int i = 0; i < rows.length; i++) rows[i] = chunks.get(i);
+                tableModel.appendRows(rows, rows.length);
+                filterStatus.setText("Scanning " + done.get() + " of " + candidates.length + "…");
+            }
 
-            if (!q.isEmpty() && !rowText.contains(q)) continue;
+            @Override
+            protected void done() {
+                if (isCancelled() || generation != filterGeneration) return;
+                int[] rows = tableModel.rows();
+                Arrays.sort(rows);
+                tableModel.setRows(rows);
+                filterStatus.setText(rows.length + " shown, " + candidates.length + " scanned");
+            }
+        };
+        scanWorker.execute();
+    }
 
-            filteredIndexMap.add(i);
-            tableModel.addRow(new Object[]{
-                    i + 1,
-                    e.method,
-                    e.host,
-                    e.path,
-                    statusText
-            });
+    private void setFilteredRows(FilterQuery q, int[] rows, int snapshot) {
+        // Entries imported while the query ran were not part of the snapshot it searched.
+        int[] merged = Arrays.copyOf(rows, rows.length + (allEntries.size() - snapshot));
+        int n = rows.length;
+        boolean rescan = false;
+        for (int i = snapshot; i < allEntries.size(); i++) {
+            if (endpointNode != null && !endpointNode.contains(i)) continue;
+            int r = filterIndex.test(i, q);
+            if (r == FilterQuery.YES) merged[n++] = i;
+            rescan |= r == FilterQuery.SCAN;
         }
+        tableModel.setRows(n == merged.length ? merged : Arrays.copyOf(merged, n));
+        if (rescan) applyFilter();
     }
 
-    private String extractStatusFromResponse(burp.api.montoya.http.message.responses.HttpResponse resp) {
-        try {
-            String s = resp.toString();
-            int firstLineEnd = s.indexOf("\r\n");
-            if (firstLineEnd <= 0) firstLineEnd = s.indexOf("\n");
-            String line = firstLineEnd > 0 ? s.substring(0, firstLineEnd) : s;
-
-            String[] parts = line.split("\\s+");
-            if (parts.length >= 2) return parts[1];
-        } catch (Exception ignored) {}
-        return "";
+    // New rows that need a body scan are picked up by running the whole query again once the
+    // import pauses.
+    private void appendFilteredRows(int from) {
+        int[] rows = new int[allEntries.size() - from];
+        int n = 0;
+        boolean rescan = false;
+        for (int i = from; i < allEntries.size(); i++) {
+            if (endpointNode != null && !endpointNode.contains(i)) continue;
+            int r = filterIndex.test(i, query);
+            if (r == FilterQuery.YES) rows[n++] = i;
+            rescan |= r == FilterQuery.SCAN;
+        }
+        tableModel.appendRows(rows, n);
+        if (rescan) applyFilter();
     }
 
-    private void openEntryTab(int idx) {
-        if (idx < 0 || idx >= allEntries.size()) return;
-        ProxymanParser.ParsedEntry entry = allEntries.get(idx);
+    private void pinEntryTab(ProxymanParser.ParsedEntry entry) {
+        stats.timeEdt(ImportStats.Phase.EDT_VIEWER, () -> openPinnedTab(entry));
+    }
 
-        String tabKey = "IDX:" + idx;
-        for (int i = 0; i < requestTabs.getTabCount(); i++) {
-            if (tabKey.equals(requestTabs.getToolTipTextAt(i))) {
-                requestTabs.setSelectedIndex(i);
-                return;
-            }
+    private void openPinnedTab(ProxymanParser.ParsedEntry entry) {
+        RequestTab existing = pinnedTabs.get(entry);
+        if (existing != null) {
+            requestTabs.setSelectedComponent(existing);
+            return;
         }
 
-        RequestTab tab = new RequestTab(api, entry);
+        RequestTab tab = new RequestTab(api);
+        tab.setSearchExpression(query.bodyText());
+        tab.setEntry(entry);
 
         String title = entry.method + " " + compactPath(entry.path);
         if (title.length() > 48) title = title.substring(0, 45) + "...";
 
+        pinnedTabs.put(entry, tab);
         requestTabs.addTab(title, tab);
         int newIndex = requestTabs.getTabCount() - 1;
-        requestTabs.setToolTipTextAt(newIndex, tabKey);
+        requestTabs.setToolTipTextAt(newIndex, entry.host + " " + entry.path);
 
-        requestTabs.setTabComponentAt(newIndex, createClosableTab(title));
+        requestTabs.setTabComponentAt(newIndex, createClosableTab(title, entry));
         requestTabs.setSelectedIndex(newIndex);
+
+        evictPinnedTabs();
     }
 
-    private Component createClosableTab(String title) {
+    private void evictPinnedTabs() {
+        int max = (Integer) maxPinnedTabs.getValue();
+        Iterator<RequestTab> it = pinnedTabs.values().iterator();
+        while (pinnedTabs.size() > max && it.hasNext()) {
+            RequestTab eldest = it.next();
+            it.remove();
+            requestTabs.remove(eldest);
+            eldest.dispose();
+        }
+    }
+
+    private Component createClosableTab(String title, ProxymanParser.ParsedEntry entry) {
         JPanel p = new JPanel(new FlowLayout(FlowLayout.LEFT, 6, 0));
         p.setOpaque(false);
 
@@ -319,8 +760,10 @@ public class MainTab extends JPanel {
         p.add(x);
 
         x.addActionListener(e -> {
-            int idx = requestTabs.indexOfTabComponent(p);
-            if (idx >= 0) requestTabs.removeTabAt(idx);
+            RequestTab tab = pinnedTabs.remove(entry);
+            if (tab == null) return;
+            requestTabs.remove(tab);
+            tab.dispose();
         });
 
         return p;
@@ -334,32 +777,167 @@ public class MainTab extends JPanel {
     }
 
     private void onSendAllToRepeater() {
-        int sent = 0;
-        for (int i = 0; i < allEntries.size(); i++) {
-            ProxymanParser.ParsedEntry entry = allEntries.get(i);
-            try {
-                String tabName = String.format("Proxyman[%d] %s %s", i + 1, entry.host, entry.path);
-                api.repeater().sendToRepeater(entry.request, tabName);
-                sent++;
-            } catch (Exception ex) {
-                api.logging().logToError("Send ALL to Repeater failed at item " + (i + 1) + ": " + ex.getMessage());
-            }
-        }
-        countLabel.setText(allEntries.size() + " requests • sent " + sent + " to Repeater");
+        runBulkJob("Send to Repeater", "sent", "to Repeater", (i, entry) -> {
+            String tabName = String.format("Proxyman[%d] %s %s", i + 1, entry.host, entry.path);
+            api.repeater().sendToRepeater(BurpMessages.request(entry), tabName);
+            return null;
+        });
     }
 
+    // The scope check needs only the row; duplicates are recognised before the messages are
+    // rebuilt unless bodies are compared. Both keys of an added request go into the ledger, so a
+    // later run finds it with either setting.
     private void onAddAllToSiteMap() {
-        int added = 0;
-        for (int i = 0; i < allEntries.size(); i++) {
-            ProxymanParser.ParsedEntry entry = allEntries.get(i);
-            try {
-                HttpRequestResponse rr = HttpRequestResponse.httpRequestResponse(entry.request, entry.response);
-                api.siteMap().add(rr);
-                added++;
-            } catch (Exception ex) {
-                api.logging().logToError("Add ALL to Site Map failed at item " + (i + 1) + ": " + ex.getMessage());
+        boolean scopeOnly = siteMapScopeOnly.isSelected();
+        boolean skipSeen = siteMapSkipSeen.isSelected();
+        boolean compareBodies = siteMapCompareBodies.isSelected();
+        SiteMapLedger ledger = SiteMapLedger.SHARED;
+
+        runBulkJob("Add to Site Map", "added", "to Site Map", (i, entry) -> {
+            if (scopeOnly && !api.scope().isInScope(SiteMapLedger.url(entry))) return "out of scope";
+            String key = SiteMapLedger.key(entry, null);
+            if (skipSeen && !compareBodies && ledger.contains(key)) return "duplicates";
+
+            BurpMessages.Messages messages = BurpMessages.materialize(entry);
+            String bodyKey = SiteMapLedger.key(entry, messages.request.toByteArray().getBytes());
+            if (skipSeen && compareBodies && ledger.contains(bodyKey)) return "duplicates";
+
+            HttpRequestResponse rr = HttpRequestResponse.httpRequestResponse(messages.request, messages.response);
+            api.siteMap().add(rr);
+            ledger.add(key);
+            ledger.add(bodyKey);
+            return null;
+        });
+    }
+
+    private int[] bulkTargetRows() {
+        Object scope = bulkScope.getSelectedItem();
+        if (BULK_FILTERED.equals(scope)) return tableModel.rows();
+        if (BULK_SELECTED.equals(scope)) {
+            int[] viewRows = table.getSelectedRows();
+            int[] rows = new int[viewRows.length];
+            int n = 0;
+            for (int viewRow : viewRows) {
+                int idx = tableModel.entryIndexAt(table.convertRowIndexToModel(viewRow));
+                if (idx >= 0) rows[n++] = idx;
             }
+            Arrays.sort(rows, 0, n);
+            return Arrays.copyOf(rows, n);
         }
-        countLabel.setText(allEntries.size() + " requests • added " + added + " to Site Map");
+        int[] rows = new int[allEntries.size()];
+        for (int i = 0; i < rows.length; i++) rows[i] = i;
+        return rows;
+    }
+
+    private void runBulkJob(String name, String verb, String target, BulkJob.Action action) {
+        if (isLoading.get() || (bulkJob != null && !bulkJob.isDone())) return;
+
+        int[] rows = bulkTargetRows();
+        if (rows.length == 0) {
+            countLabel.setText(allEntries.size() + " requests • nothing to " + name.toLowerCase(Locale.ROOT));
+            return;
+        }
+
+        setBulkControlsEnabled(false);
+        progressBar.setVisible(true);
+        progressBar.setIndeterminate(false);
+        progressBar.setMinimum(0);
+        progressBar.setMaximum(rows.length);
+        progressBar.setValue(0);
+        progressBar.setString(name + ": 0 of " + rows.length);
+        cancelButton.setVisible(true);
+        cancelButton.setEnabled(true);
+
+        BulkJob job = new BulkJob(name, new ArrayList<>(allEntries), rows,
+                (Integer) bulkBatchSize.getValue(), (Integer) bulkRate.getValue(), action,
+                new BulkJob.Listener() {
+                    @Override
+                    public void onProgress(BulkJob.Result p) {
+                        progressBar.setValue(p.done());
+                        progressBar.setString(name + ": " + p.done() + " of " + p.total
+                                + (p.failed > 0 ? " (" + p.failed + " failed)" : ""));
+                    }
+
+                    @Override
+                    public void onDone(BulkJob.Result r) {
+                        StringBuilder skipped = new StringBuilder();
+                        r.skipped.forEach((reason, n) -> skipped.append(", ").append(n).append(" skipped as ").append(reason));
+                        countLabel.setText(allEntries.size() + " requests • " + verb + " " + r.succeeded + " " + target
+                                + skipped + (r.failed > 0 ? ", " + r.failed + " failed" : "")
+                                + (r.cancelled ? " (cancelled after " + r.done() + " of " + r.total + ")" : ""));
+                        progressBar.setVisible(false);
+                        progressBar.setString("");
+                        cancelButton.setVisible(false);
+                        setBulkControlsEnabled(true);
+                    }
+                },
+                api.logging()::logToError);
+        bulkJob = job;
+        job.execute();
+    }
+
+    private void onExportHar() {
+        if (isLoading.get() || (bulkJob != null && !bulkJob.isDone())) return;
+
+        int[] rows = bulkTargetRows();
+        if (rows.length == 0) {
+            countLabel.setText(allEntries.size() + " requests • nothing to export");
+            return;
+        }
+
+        JFileChooser chooser = new JFileChooser();
+        chooser.setDialogTitle("Export " + rows.length + " requests to HAR");
+        chooser.setSelectedFile(new File("proxyman-export.har"));
+        if (chooser.showSaveDialog(this) != JFileChooser.APPROVE_OPTION) return;
+        File out = chooser.getSelectedFile();
+
+        setBulkControlsEnabled(false);
+        progressBar.setVisible(true);
+        progressBar.setIndeterminate(false);
+        progressBar.setMinimum(0);
+        progressBar.setMaximum(rows.length);
+        progressBar.setValue(0);
+        progressBar.setString("Export HAR: 0 of " + rows.length);
+        cancelButton.setVisible(true);
+        cancelButton.setEnabled(true);
+
+        HarExportJob job = new HarExportJob(out, new ArrayList<>(allEntries), rows, (Integer) parseThreads.getValue(),
+                new HarExportJob.Listener() {
+                    @Override
+                    public void onProgress(HarExportJob.Progress p) {
+                        progressBar.setValue(p.done());
+                        progressBar.setString(String.format(Locale.ROOT, "Export HAR: %,d of %,d • %.1f MB/s • %,.0f req/s",
+                                p.done(), p.total, p.megabytesPerSecond(), p.entriesPerSecond()));
+                    }
+
+                    @Override
+                    public void onDone(HarExportJob.Progress r, Exception error) {
+                        if (error != null) {
+                            api.logging().logToError("HAR export failed: " + error.getMessage());
+                            countLabel.setText(allEntries.size() + " requests • HAR export failed (see Extender errors)");
+                        } else {
+                            countLabel.setText(String.format(Locale.ROOT, "%d requests • exported %d to %s (%.1f MB, %.1f MB/s)%s%s",
+                                    allEntries.size(), r.exported, out.getName(), r.bytes / (double) (1 << 20),
+                                    r.megabytesPerSecond(),
+                                    r.failed > 0 ? ", " + r.failed + " failed" : "",
+                                    r.cancelled ? " (cancelled after " + r.done() + " of " + r.total + ")" : ""));
+                        }
+                        progressBar.setVisible(false);
+                        progressBar.setString("");
+                        cancelButton.setVisible(false);
+                        setBulkControlsEnabled(true);
+                    }
+                },
+                api.logging()::logToError);
+        bulkJob = job;
+        job.execute();
+    }
+
+    private void setBulkControlsEnabled(boolean enabled) {
+        boolean hasEntries = !allEntries.isEmpty();
+        loadButton.setEnabled(enabled);
+        sendAllToRepeaterButton.setEnabled(enabled && hasEntries);
+        addAllToSiteMapButton.setEnabled(enabled && hasEntries);
+        exportHarButton.setEnabled(enabled && hasEntries);
     }
 }
@@ -0,0 +1,53 @@
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+// Bounded LRU of materialized request/response pairs, limited both by entry count and by
+// total message bytes so a handful of huge responses cannot pin the heap.
+public class MessageCache {
+    public static final MessageCache SHARED = new MessageCache(256, 64L * 1024 * 1024);
+
+    private final int maxEntries;
+    private final long maxBytes;
+    private final LinkedHashMap<ProxymanParser.ParsedEntry, BurpMessages.Messages> map =
+            new LinkedHashMap<>(64, 0.75f, true);
+    private long bytes;
+
+    public MessageCache(int maxEntries, long maxBytes) {
+        this.maxEntries = maxEntries;
+        this.maxBytes = maxBytes;
+    }
+
+    public synchronized BurpMessages.Messages get(ProxymanParser.ParsedEntry entry) {
+        return map.get(entry);
+    }
+
+    public synchronized void put(ProxymanParser.ParsedEntry entry, BurpMessages.Messages messages) {
+        BurpMessages.Messages previous = map.put(entry, messages);
+        if (previous != null) bytes -= previous.size;
+        bytes += messages.size;
+
+        Iterator<Map.Entry<ProxymanParser.ParsedEntry, BurpMessages.Messages>> it = map.entrySet().iterator();
+        while (map.size() > 1 && (map.size() > maxEntries || bytes > maxBytes) && it.hasNext()) {
+            Map.Entry<ProxymanParser.ParsedEntry, BurpMessages.Messages> eldest = it.next();
+            if (eldest.getKey() == entry) continue;
+            bytes -= eldest.getValue().size;
+            it.remove();
+        }
+    }
+
+    public synchronized void evictSource(ArchiveSource source) {
+        Iterator<Map.Entry<ProxymanParser.ParsedEntry, BurpMessages.Messages>> it = map.entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry<ProxymanParser.ParsedEntry, BurpMessages.Messages> e = it.next();
+            if (e.getKey().source != source) continue;
+            bytes -= e.getValue().size;
+            it.remove();
+        }
+    }
+
+    public synchronized void clear() {
+        map.clear();
+        bytes = 0;
+    }
+}
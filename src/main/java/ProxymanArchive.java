@@ -0,0 +1,312 @@
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+import java.util.zip.ZipException;
+
+// Read-only zip reader over a memory-mapped .proxymanlogv2 file. Entries are located from the
+// central directory and inflated straight out of the mapping, so no per-entry byte[] copy of
+// the compressed data is made. The file is mapped in SEGMENT_SIZE windows, at most MAX_SEGMENTS
+// of them at a time, least recently used first out. Java has no explicit unmap: a mapping is
+// released only once its buffer is garbage collected, and until then it holds address space and,
+// on Windows, a lock on the file. Small windows and close() dropping them keep what lingers after
+// a clear or reload down to a few windows awaiting the next collection.
+public class ProxymanArchive implements Closeable {
+    private static final int EOCD_SIG = 0x06054b50;
+    private static final int ZIP64_EOCD_SIG = 0x06064b50;
+    private static final int ZIP64_LOCATOR_SIG = 0x07064b50;
+    private static final int CEN_SIG = 0x02014b50;
+    private static final int LOC_SIG = 0x04034b50;
+    private static final int LOC_HEADER_SIZE = 30;
+    private static final int EOCD_SIZE = 22;
+    private static final int MAX_COMMENT = 0xFFFF;
+
+    private static final int STORED = 0;
+    private static final int DEFLATED = 8;
+
+    private static final long SEGMENT_SIZE = 64L * 1024 * 1024;
+    private static final long SEGMENT_OVERLAP = 4L * 1024 * 1024;
+    private static final int MAX_SEGMENTS = 8;
+
+    public static final class Entry {
+        public final String name;
+        public final long size;
+        public final long compressedSize;
+        public final long localHeaderOffset;
+        public final long crc;
+        final int method;
+
+        Entry(String name, int method, long crc, long compressedSize, long size, long localHeaderOffset) {
+            this.name = name;
+            this.method = method;
+            this.crc = crc;
+            this.compressedSize = compressedSize;
+            this.size = size;
+            this.localHeaderOffset = localHeaderOffset;
+        }
+
+        public boolean isDirectory() { return name.endsWith("/"); }
+    }
+
+    private final File file;
+    private final FileChannel channel;
+    private final long length;
+    private final LinkedHashMap<Integer, MappedByteBuffer> segments = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Integer, MappedByteBuffer> eldest) {
+            return size() > MAX_SEGMENTS;
+        }
+    };
+    private final List<Entry> entries;
+    private final Entry[] byOffset;
+    private long cenOffset;
+    private long cenSize;
+
+    private ProxymanArchive(File file, FileChannel channel) throws IOException {
+        this.file = file;
+        this.channel = channel;
+        this.length = channel.size();
+        this.entries = Collections.unmodifiableList(readCentralDirectory());
+        this.byOffset = entries.toArray(new Entry[0]);
+        Arrays.sort(byOffset, Comparator.comparingLong(e -> e.localHeaderOffset));
+    }
+
+    public static ProxymanArchive open(File file) throws IOException {
+        FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+        try {
+            return new ProxymanArchive(file, channel);
+        } catch (IOException | RuntimeException ex) {
+            channel.close();
+            throw ex;
+        }
+    }
+
+    public File file() { return file; }
+
+    public long length() { return length; }
+
+    public List<Entry> entries() { return entries; }
+
+    // SHA-256 of the raw central directory. It covers every entry's name, sizes, offset and CRC-32,
+    // so it changes whenever any entry's content does, without reading the entry data itself.
+    public byte[] centralDirectoryDigest() throws IOException {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(slice(cenOffset, cenSize));
+            return digest.digest();
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    public Entry entryAt(long localHeaderOffset) {
+        int lo = 0, hi = byOffset.length - 1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            long off = byOffset[mid].localHeaderOffset;
+            if (off < localHeaderOffset) lo = mid + 1;
+            else if (off > localHeaderOffset) hi = mid - 1;
+            else return byOffset[mid];
+        }
+        return null;
+    }
+
+    public InputStream open(Entry e) throws IOException {
+        ByteBuffer loc = slice(e.localHeaderOffset, LOC_HEADER_SIZE);
+        if (loc.getInt(0) != LOC_SIG) throw new ZipException("Bad local header for " + e.name);
+        int nameLen = loc.getShort(26) & 0xFFFF;
+        int extraLen = loc.getShort(28) & 0xFFFF;
+
+        ByteBuffer data = slice(e.localHeaderOffset + LOC_HEADER_SIZE + nameLen + extraLen, e.compressedSize);
+        return switch (e.method) {
+            case STORED -> new BufferInputStream(data);
+            case DEFLATED -> new InflatingInputStream(data);
+            default -> throw new ZipException("Unsupported compression method " + e.method + " for " + e.name);
+        };
+    }
+
+    @Override
+    public void close() throws IOException {
+        synchronized (this) {
+            segments.clear();
+        }
+        channel.close();
+    }
+
+    private List<Entry> readCentralDirectory() throws IOException {
+        long tailStart = Math.max(0, length - EOCD_SIZE - MAX_COMMENT);
+        ByteBuffer tail = slice(tailStart, length - tailStart);
+
+        int eocd = -1;
+        for (int i = tail.limit() - EOCD_SIZE; i >= 0; i--) {
+            if (tail.getInt(i) == EOCD_SIG) { eocd = i; break; }
+        }
+        if (eocd < 0) throw new ZipException(file.getName() + " is not a zip archive");
+
+        long count = tail.getShort(eocd + 10) & 0xFFFF;
+        long cenSize = tail.getInt(eocd + 12) & 0xFFFFFFFFL;
+        long cenOffset = tail.getInt(eocd + 16) & 0xFFFFFFFFL;
+
+        int locator = eocd - 20;
+        if (locator >= 0 && tail.getInt(locator) == ZIP64_LOCATOR_SIG) {
+            long zip64Eocd = tail.getLong(locator + 8);
+            ByteBuffer z = slice(zip64Eocd, 56);
+            if (z.getInt(0) != ZIP64_EOCD_SIG) throw new ZipException("Bad zip64 end record in " + file.getName());
+            count = z.getLong(32);
+            cenSize = z.getLong(40);
+            cenOffset = z.getLong(48);
+        }
+
+        this.cenOffset = cenOffset;
+        this.cenSize = cenSize;
+
+        ByteBuffer cen = slice(cenOffset, cenSize);
+        List<Entry> out = new ArrayList<>((int) Math.min(count, Integer.MAX_VALUE));
+        int pos = 0;
+        for (long i = 0; i < count; i++) {
+            if (cen.getInt(pos) != CEN_SIG) throw new ZipException("Bad central directory in " + file.getName());
+
+            int method = cen.getShort(pos + 10) & 0xFFFF;
+            long crc = cen.getInt(pos + 16) & 0xFFFFFFFFL;
+            long compressedSize = cen.getInt(pos + 20) & 0xFFFFFFFFL;
+            long size = cen.getInt(pos + 24) & 0xFFFFFFFFL;
+            int nameLen = cen.getShort(pos + 28) & 0xFFFF;
+            int extraLen = cen.getShort(pos + 30) & 0xFFFF;
+            int commentLen = cen.getShort(pos + 32) & 0xFFFF;
+            long offset = cen.getInt(pos + 42) & 0xFFFFFFFFL;
+
+            byte[] nameBytes = new byte[nameLen];
+            cen.get(pos + 46, nameBytes);
+            String name = new String(nameBytes, StandardCharsets.UTF_8);
+
+            // Zip64 extra field: only the values saturated in the fixed header are present, in this order.
+            int extra = pos + 46 + nameLen;
+            int extraEnd = extra + extraLen;
+            while (extra + 4 <= extraEnd) {
+                int id = cen.getShort(extra) & 0xFFFF;
+                int len = cen.getShort(extra + 2) & 0xFFFF;
+                if (id == 0x0001) {
+                    int p = extra + 4;
+                    if (size == 0xFFFFFFFFL) { size = cen.getLong(p); p += 8; }
+                    if (compressedSize == 0xFFFFFFFFL) { compressedSize = cen.getLong(p); p += 8; }
+                    if (offset == 0xFFFFFFFFL) { offset = cen.getLong(p); }
+                    break;
+                }
+                extra += 4 + len;
+            }
+
+            out.add(new Entry(name, method, crc, compressedSize, size, offset));
+            pos += 46 + nameLen + extraLen + commentLen;
+        }
+        return out;
+    }
+
+    private ByteBuffer slice(long offset, long len) throws IOException {
+        if (offset < 0 || len < 0 || offset + len > length) {
+            throw new ZipException("Entry data out of bounds in " + file.getName());
+        }
+        if (len > Integer.MAX_VALUE) throw new ZipException("Entry larger than 2 GB in " + file.getName());
+
+        int index = (int) (offset / SEGMENT_SIZE);
+        long segStart = index * SEGMENT_SIZE;
+        MappedByteBuffer segment = segment(index);
+
+        ByteBuffer out;
+        if (offset + len <= segStart + segment.capacity()) {
+            out = segment.slice((int) (offset - segStart), (int) len);
+        } else {
+            out = channel.map(FileChannel.MapMode.READ_ONLY, offset, len);
+        }
+        return out.order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    private synchronized MappedByteBuffer segment(int index) throws IOException {
+        MappedByteBuffer segment = segments.get(index);
+        if (segment == null) {
+            long start = index * SEGMENT_SIZE;
+            long len = Math.min(SEGMENT_SIZE + SEGMENT_OVERLAP, length - start);
+            segment = channel.map(FileChannel.MapMode.READ_ONLY, start, len);
+            segments.put(index, segment);
+        }
+        return segment;
+    }
+
+    private static final class BufferInputStream extends InputStream {
+        private final ByteBuffer buf;
+
+        BufferInputStream(ByteBuffer buf) { this.buf = buf; }
+
+        @Override
+        public int read() {
+            return buf.hasRemaining() ? buf.get() & 0xFF : -1;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) {
+            if (len == 0) return 0;
+            if (!buf.hasRemaining()) return -1;
+            int n = Math.min(len, buf.remaining());
+            buf.get(b, off, n);
+            return n;
+        }
+
+        @Override
+        public int available() { return buf.remaining(); }
+    }
+
+    private static final class InflatingInputStream extends InputStream {
+        private final Inflater inflater = new Inflater(true);
+        private final byte[] single = new byte[1];
+        private boolean eof;
+
+        InflatingInputStream(ByteBuffer compressed) {
+            inflater.setInput(compressed);
+        }
+
+        @Override
+        public int read() throws IOException {
+            return read(single, 0, 1) == -1 ? -1 : single[0] & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (len == 0) return 0;
+            if (eof) return -1;
+            try {
+                while (true) {
+                    int n = inflater.inflate(b, off, len);
+                    if (n > 0) return n;
+                    if (inflater.finished() || inflater.needsInput()) {
+                        eof = true;
+                        return -1;
+                    }
+                    if (inflater.needsDictionary()) throw new ZipException("Deflate dictionary not supported");
+                }
+            } catch (DataFormatException ex) {
+                throw new ZipException(ex.getMessage());
+            }
+        }
+
+        @Override
+        public void close() {
+            inflater.end();
+        }
+    }
+}
@@ -0,0 +1,152 @@
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+// Headless converter: turns Proxyman archives and HAR files into raw HTTP, HAR or Burp XML
+// without Burp.
+// Entries are decoded and formatted on worker threads and written in archive order; at most a
+// small window of formatted entries is held per thread, so memory stays flat for any input size.
+public class ProxymanCli {
+    private static final String USAGE = """
+            Usage: java -jar proxyman-log-importer-1.0.0-cli.jar [options] <archive|directory>...
+
+            Converts .proxymanlogv2 archives and .har files (directories are searched recursively).
+              -f, --format raw|har|xml   output format (default: har)
+              -o, --output FILE          write to FILE instead of standard output
+              -t, --threads N            decode threads (default: available processors)
+              -q, --quiet                do not print the summary to standard error
+              -h, --help                 show this help
+            """;
+
+    public static void main(String[] args) {
+        System.exit(run(args));
+    }
+
+    static int run(String[] args) {
+        String format = "har";
+        String output = null;
+        int threads = Runtime.getRuntime().availableProcessors();
+        boolean quiet = false;
+        List<File> inputs = new ArrayList<>();
+
+        try {
+            for (int i = 0; i < args.length; i++) {
+                String arg = args[i];
+                switch (arg) {
+                    case "-f", "--format" -> format = value(args, ++i, arg);
+                    case "-o", "--output" -> output = value(args, ++i, arg);
+                    case "-t", "--threads" -> threads = Math.max(1, Integer.parseInt(value(args, ++i, arg)));
+                    case "-q", "--quiet" -> quiet = true;
+                    case "-h", "--help" -> {
+                        System.out.print(USAGE);
+                        return 0;
+                    }
+                    default -> {
+                        if (arg.startsWith("-") && !arg.equals("-")) throw new IllegalArgumentException("Unknown option: " + arg);
+                        inputs.add(new File(arg));
+                    }
+                }
+            }
+            if (inputs.isEmpty()) throw new IllegalArgumentException("No input archives given.");
+        } catch (IllegalArgumentException ex) {
+            System.err.println(ex.getMessage());
+            System.err.print(USAGE);
+            return 2;
+        }
+
+        ExportFormat exportFormat;
+        try {
+            exportFormat = ExportFormat.forName(format);
+        } catch (IllegalArgumentException ex) {
+            System.err.println(ex.getMessage());
+            return 2;
+        }
+
+        List<File> files = BatchImport.expand(inputs.toArray(new File[0]));
+        if (files.isEmpty()) {
+            System.err.println("No captures found (" + CaptureParsers.extensions() + ").");
+            return 2;
+        }
+
+        ImportStats stats = new ImportStats(files.size() == 1 ? files.get(0).getName() : files.size() + " files");
+        stats.threads(threads);
+        int failedFiles = 0;
+        long written;
+
+        try (CountingOutputStream out = new CountingOutputStream(open(output))) {
+            out.write(exportFormat.header());
+            boolean[] first = {true};
+            for (File file : files) {
+                try {
+                    CaptureParsers.convert(file, threads, stats, exportFormat::entry, bytes -> {
+                        try {
+                            if (!first[0]) out.write(exportFormat.separator());
+                            first[0] = false;
+                            out.write(bytes);
+                        } catch (IOException ex) {
+                            throw new UncheckedIOException(ex);
+                        }
+                    });
+                } catch (UncheckedIOException ex) {
+                    // Output errors (disk full, closed pipe) end the run; archive errors do not.
+                    throw ex.getCause();
+                } catch (Exception ex) {
+                    failedFiles++;
+                    stats.fileFailed(file.getName(), ex);
+                }
+            }
+            out.write(exportFormat.footer());
+            out.flush();
+            written = out.count;
+        } catch (IOException ex) {
+            System.err.println("Write failed: " + ex.getMessage());
+            return 1;
+        } finally {
+            stats.finish(false);
+        }
+
+        if (!quiet) {
+            double seconds = stats.wallNanos() / 1e9;
+            System.err.printf(Locale.ROOT, "%s%nWrote %,d bytes (%.1f MB/s).%n",
+                    stats.summary(), written, seconds > 0 ? written / seconds / (1 << 20) : 0.0);
+            for (String failure : stats.failures()) System.err.println("  " + failure);
+        }
+        return failedFiles > 0 || stats.failed() > 0 ? 1 : 0;
+    }
+
+    private static String value(String[] args, int i, String option) {
+        if (i >= args.length) throw new IllegalArgumentException("Missing value for " + option);
+        return args[i];
+    }
+
+    private static OutputStream open(String output) throws IOException {
+        if (output == null || output.equals("-")) {
+            // Closing the wrapper must not close System.out for whoever runs us in-process.
+            return new FilterOutputStream(System.out) {
+                @Override public void write(byte[] b, int off, int len) throws IOException { out.write(b, off, len); }
+
+                @Override public void close() throws IOException { flush(); }
+            };
+        }
+        return new FileOutputStream(output);
+    }
+
+    private static final class CountingOutputStream extends BufferedOutputStream {
+        long count;
+
+        CountingOutputStream(OutputStream out) { super(out, 1 << 16); }
+
+        @Override
+        public synchronized void write(byte[] b, int off, int len) throws IOException {
+            super.write(b, off, len);
+            count += len;
+        }
+    }
+}
@@ -0,0 +1,363 @@
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Locale;
+
+// Single-pass JsonReader decoder for the Proxyman request_* schema. The polymorphic fields
+// (method, version, status) are resolved while they are read instead of being bound to
+// LinkedTreeMaps first. When bodies are not requested (the index pass), bodyData is skipped
+// without ever being materialized as a String and only the response Content-Type and
+// Content-Length are taken from the headers; otherwise header names and short values are
+// interned through HeaderDictionary.
+public class ProxymanDecoder {
+
+    private static final int[] BASE64 = new int[128];
+
+    static {
+        Arrays.fill(BASE64, -1);
+        String alphabet = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789+/";
+        for (int i = 0; i < alphabet.length(); i++) BASE64[alphabet.charAt(i)] = i;
+    }
+
+    public static ProxymanModels.LogEntry read(Reader in, boolean withBodies) throws IOException {
+        JsonReader r = new JsonReader(in);
+        if (r.peek() != JsonToken.BEGIN_OBJECT) return null;
+
+        ProxymanModels.LogEntry entry = new ProxymanModels.LogEntry();
+        r.beginObject();
+        while (r.hasNext()) {
+            switch (r.nextName()) {
+                case "request" -> entry.request = readRequest(r, withBodies);
+                case "response" -> entry.response = readResponse(r, withBodies);
+                default -> r.skipValue();
+            }
+        }
+        r.endObject();
+        return entry;
+    }
+
+    private static ProxymanModels.Request readRequest(JsonReader r, boolean withBodies) throws IOException {
+        if (!beginObjectOrSkip(r)) return null;
+
+        ProxymanModels.Request req = new ProxymanModels.Request();
+        while (r.hasNext()) {
+            switch (r.nextName()) {
+                case "method" -> req.method = readStringLike(r);
+                case "fullPath" -> req.fullPath = readString(r);
+                case "version" -> req.version = readHttpVersion(r);
+                case "scheme" -> req.scheme = readString(r);
+                case "host" -> req.host = readString(r);
+                case "port" -> req.port = readInteger(r);
+                case "isSSL" -> req.isSSL = readBoolean(r);
+                case "header" -> req.header = withBodies ? readHeaderBlock(r) : skipHeaders(r);
+                case "bodyData" -> req.bodyData = withBodies ? readString(r) : skip(r);
+                default -> r.skipValue();
+            }
+        }
+        r.endObject();
+        return req;
+    }
+
+    private static ProxymanModels.Response readResponse(JsonReader r, boolean withBodies) throws IOException {
+        if (!beginObjectOrSkip(r)) return null;
+
+        ProxymanModels.Response resp = new ProxymanModels.Response();
+        while (r.hasNext()) {
+            switch (r.nextName()) {
+                case "status" -> readStatus(r, resp);
+                case "version" -> resp.version = readHttpVersion(r);
+                case "header" -> {
+                    if (withBodies) resp.header = readHeaderBlock(r);
+                    else readIndexedHeaders(r, resp);
+                }
+                case "bodyData" -> resp.bodyData = withBodies ? readString(r) : skip(r);
+                default -> r.skipValue();
+            }
+        }
+        r.endObject();
+        return resp;
+    }
+
+    private static ProxymanModels.HeaderBlock readHeaderBlock(JsonReader r) throws IOException {
+        if (!beginObjectOrSkip(r)) return null;
+
+        ProxymanModels.HeaderBlock hb = new ProxymanModels.HeaderBlock();
+        while (r.hasNext()) {
+            if (!r.nextName().equals("entries") || r.peek() != JsonToken.BEGIN_ARRAY) {
+                r.skipValue();
+                continue;
+            }
+            hb.entries = new ArrayList<>();
+            r.beginArray();
+            while (r.hasNext()) hb.entries.add(readHeaderEntry(r));
+            r.endArray();
+        }
+        r.endObject();
+        return hb;
+    }
+
+    // Index pass: keeps the enabled Content-Type and Content-Length of a response. Other values are
+    // skipped unread when their name comes first, as Proxyman writes it.
+    private static void readIndexedHeaders(JsonReader r, ProxymanModels.Response resp) throws IOException {
+        if (!beginObjectOrSkip(r)) return;
+
+        while (r.hasNext()) {
+            if (!r.nextName().equals("entries") || r.peek() != JsonToken.BEGIN_ARRAY) {
+                r.skipValue();
+                continue;
+            }
+            r.beginArray();
+            while (r.hasNext()) {
+                if (!beginObjectOrSkip(r)) continue;
+
+                String name = null, value = null;
+                Boolean enabled = null;
+                while (r.hasNext()) {
+                    switch (r.nextName()) {
+                        case "key" -> {
+                            ProxymanModels.HeaderKey key = readHeaderKey(r);
+                            name = key != null ? key.name : null;
+                        }
+                        case "value" -> value = name == null || isIndexedHeader(name) ? readString(r) : skip(r);
+                        case "isEnabled" -> enabled = readBoolean(r);
+                        default -> r.skipValue();
+                    }
+                }
+                r.endObject();
+
+                if (name == null || value == null || Boolean.FALSE.equals(enabled)) continue;
+                if (name.equalsIgnoreCase("Content-Type")) {
+                    resp.contentType = value;
+                } else if (name.equalsIgnoreCase("Content-Length")) {
+                    try {
+                        resp.contentLength = Long.parseLong(value.trim());
+                    } catch (NumberFormatException ignored) {}
+                }
+            }
+            r.endArray();
+        }
+        r.endObject();
+    }
+
+    private static boolean isIndexedHeader(String name) {
+        return name.equalsIgnoreCase("Content-Type") || name.equalsIgnoreCase("Content-Length");
+    }
+
+    private static ProxymanModels.HeaderEntry readHeaderEntry(JsonReader r) throws IOException {
+        if (!beginObjectOrSkip(r)) return null;
+
+        ProxymanModels.HeaderEntry he = new ProxymanModels.HeaderEntry();
+        while (r.hasNext()) {
+            switch (r.nextName()) {
+                case "key" -> he.key = readHeaderKey(r);
+                case "value" -> he.value = HeaderDictionary.SHARED.intern(readString(r));
+                case "isEnabled" -> he.isEnabled = readBoolean(r);
+                default -> r.skipValue();
+            }
+        }
+        r.endObject();
+        return he;
+    }
+
+    private static ProxymanModels.HeaderKey readHeaderKey(JsonReader r) throws IOException {
+        if (!beginObjectOrSkip(r)) return null;
+
+        ProxymanModels.HeaderKey key = new ProxymanModels.HeaderKey();
+        while (r.hasNext()) {
+            switch (r.nextName()) {
+                case "name" -> key.name = HeaderDictionary.SHARED.intern(readString(r));
+                default -> r.skipValue();
+            }
+        }
+        r.endObject();
+        return key;
+    }
+
+    // Plain string, or an object carrying the value under name/value/rawValue/version.
+    private static String readStringLike(JsonReader r) throws IOException {
+        if (r.peek() != JsonToken.BEGIN_OBJECT) return readString(r);
+
+        String name = null, value = null, rawValue = null, version = null;
+        r.beginObject();
+        while (r.hasNext()) {
+            switch (r.nextName()) {
+                case "name" -> name = readStringOnly(r);
+                case "value" -> value = readStringOnly(r);
+                case "rawValue" -> rawValue = readStringOnly(r);
+                case "version" -> version = readStringOnly(r);
+                default -> r.skipValue();
+            }
+        }
+        r.endObject();
+
+        if (name != null) return name;
+        if (value != null) return value;
+        if (rawValue != null) return rawValue;
+        return version;
+    }
+
+    // "HTTP/1.1", "1.1", {"name":"HTTP/1.1"}, {"major":1,"minor":1} or {"value":"HTTP/2"}.
+    private static String readHttpVersion(JsonReader r) throws IOException {
+        if (r.peek() != JsonToken.BEGIN_OBJECT) {
+            String s = readString(r);
+            if (s == null) return null;
+            s = s.trim();
+            if (s.isEmpty()) return "";
+            if (!s.toUpperCase(Locale.ROOT).startsWith("HTTP/") && s.matches("\\d+(\\.\\d+)?")) {
+                return "HTTP/" + s;
+            }
+            return s;
+        }
+
+        String name = null, value = null;
+        Integer major = null, minor = null;
+        r.beginObject();
+        while (r.hasNext()) {
+            switch (r.nextName()) {
+                case "name" -> name = readStringOnly(r);
+                case "major" -> major = readInteger(r);
+                case "minor" -> minor = readInteger(r);
+                case "value" -> value = readStringOnly(r);
+                default -> r.skipValue();
+            }
+        }
+        r.endObject();
+
+        if (name != null && !name.trim().isEmpty()) return name.trim();
+        if (major != null && minor != null) return "HTTP/" + major + "." + minor;
+        if (value != null && !value.trim().isEmpty()) return value.trim();
+        return "";
+    }
+
+    // 200, "200" or {"code":200,"phrase":"OK"}.
+    private static void readStatus(JsonReader r, ProxymanModels.Response resp) throws IOException {
+        if (r.peek() != JsonToken.BEGIN_OBJECT) {
+            Integer code = readInteger(r);
+            resp.status = code != null ? code : 0;
+            return;
+        }
+
+        r.beginObject();
+        while (r.hasNext()) {
+            switch (r.nextName()) {
+                case "code" -> {
+                    Integer code = readInteger(r);
+                    resp.status = code != null ? code : 0;
+                }
+                case "phrase" -> {
+                    String phrase = readStringOnly(r);
+                    if (phrase != null) resp.statusPhrase = phrase;
+                }
+                default -> r.skipValue();
+            }
+        }
+        r.endObject();
+    }
+
+    private static boolean beginObjectOrSkip(JsonReader r) throws IOException {
+        if (r.peek() == JsonToken.BEGIN_OBJECT) {
+            r.beginObject();
+            return true;
+        }
+        r.skipValue();
+        return false;
+    }
+
+    private static String readString(JsonReader r) throws IOException {
+        return switch (r.peek()) {
+            case STRING, NUMBER -> r.nextString();
+            case BOOLEAN -> String.valueOf(r.nextBoolean());
+            default -> skip(r);
+        };
+    }
+
+    private static String readStringOnly(JsonReader r) throws IOException {
+        if (r.peek() == JsonToken.STRING) return r.nextString();
+        return skip(r);
+    }
+
+    private static Integer readInteger(JsonReader r) throws IOException {
+        JsonToken t = r.peek();
+        if (t != JsonToken.NUMBER && t != JsonToken.STRING) {
+            skip(r);
+            return null;
+        }
+        String s = r.nextString().trim();
+        try {
+            return Integer.parseInt(s);
+        } catch (NumberFormatException ignored) {}
+        try {
+            return (int) Double.parseDouble(s);
+        } catch (NumberFormatException ignored) {
+            return null;
+        }
+    }
+
+    private static Boolean readBoolean(JsonReader r) throws IOException {
+        return switch (r.peek()) {
+            case BOOLEAN -> r.nextBoolean();
+            case STRING -> Boolean.parseBoolean(r.nextString());
+            default -> {
+                skip(r);
+                yield null;
+            }
+        };
+    }
+
+    private static String skip(JsonReader r) throws IOException {
+        r.skipValue();
+        return null;
+    }
+
+    private static ProxymanModels.HeaderBlock skipHeaders(JsonReader r) throws IOException {
+        r.skipValue();
+        return null;
+    }
+
+    // Length of the bytes encoded by b64, with the same leniency as the old
+    // "pad to a multiple of 4, then Base64.getDecoder()" path. -1 if it would not decode.
+    public static int base64DecodedLength(String b64) {
+        if (b64 == null || b64.isEmpty()) return 0;
+
+        int len = b64.length();
+        int pads = 0;
+        while (pads < len && b64.charAt(len - 1 - pads) == '=') pads++;
+        int n = len - pads;
+
+        for (int i = 0; i < n; i++) {
+            char c = b64.charAt(i);
+            if (c >= 128 || BASE64[c] < 0) return -1;
+        }
+
+        int totalPads = pads + (len % 4 == 0 ? 0 : 4 - len % 4);
+        int rem = n % 4;
+        boolean valid = rem == 0 ? totalPads == 0 : (rem == 2 && totalPads == 2) || (rem == 3 && totalPads == 1);
+        if (!valid) return -1;
+
+        return n / 4 * 3 + (rem == 2 ? 1 : rem == 3 ? 2 : 0);
+    }
+
+    // Decodes b64 into dst at off; length must come from base64DecodedLength.
+    public static void decodeBase64(String b64, byte[] dst, int off, int length) {
+        int end = off + length;
+        int i = 0;
+        while (off + 3 <= end) {
+            int v = BASE64[b64.charAt(i)] << 18 | BASE64[b64.charAt(i + 1)] << 12
+                    | BASE64[b64.charAt(i + 2)] << 6 | BASE64[b64.charAt(i + 3)];
+            dst[off++] = (byte) (v >> 16);
+            dst[off++] = (byte) (v >> 8);
+            dst[off++] = (byte) v;
+            i += 4;
+        }
+        if (off < end) {
+            int v = BASE64[b64.charAt(i)] << 18 | BASE64[b64.charAt(i + 1)] << 12;
+            if (end - off == 2) v |= BASE64[b64.charAt(i + 2)] << 6;
+            dst[off++] = (byte) (v >> 16);
+            if (off < end) dst[off] = (byte) (v >> 8);
+        }
+    }
+}
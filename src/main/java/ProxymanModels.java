@@ -1,6 +1,8 @@
-
 import java.util.List;
 
+// Decoded form of one request_* entry. Polymorphic fields from the Proxyman schema (method,
+// version, status) are already resolved to plain values by ProxymanDecoder; bodies stay as the
+// original base64 text and are only present when the decoder was asked for them.
 public class ProxymanModels {
 
     public static class LogEntry {
@@ -9,9 +11,9 @@ public class ProxymanModels {
     }
 
     public static class Request {
-        public Object method;
+        public String method;
         public String fullPath;
-        public Object version;  // can be string or object (major/minor or name)
+        public String version;
         public String scheme;
         public String host;
         public Integer port;
@@ -21,11 +23,14 @@ public class ProxymanModels {
     }
 
     public static class Response {
-        public Object status;   // can be int OR object like {"code":500,"phrase":"Internal Server Error"}
-        public Object version;  // can be string or object
+        public int status;
+        public String statusPhrase = "";
+        public String version;
         public HeaderBlock header;
         public String bodyData;
-        public Object error;
+        // Filled by the index pass, which reads these two headers instead of the header block.
+        public String contentType;
+        public long contentLength = -1;
     }
 
     public static class HeaderBlock {
@@ -40,6 +45,5 @@ public class ProxymanModels {
 
     public static class HeaderKey {
         public String name;
-        public String nameInLowercase;
     }
 }
@@ -1,319 +1,391 @@
-
-import burp.api.montoya.core.ByteArray;
-import burp.api.montoya.http.HttpService;
-import burp.api.montoya.http.message.requests.HttpRequest;
-import burp.api.montoya.http.message.responses.HttpResponse;
-
-import com.google.gson.Gson;
-
+import java.io.Closeable;
 import java.io.File;
-import java.io.InputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
 import java.net.URI;
-import java.net.URLDecoder;
 import java.nio.charset.StandardCharsets;
 import java.util.*;
-import java.util.zip.ZipEntry;
-import java.util.zip.ZipFile;
-
-public class ProxymanParser {
-
-    private static final Gson GSON = new Gson();
-
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Decode layer: reads .proxymanlogv2 archives into index entries and raw HTTP bytes. It has no
+// Burp dependency; BurpMessages turns its output into Montoya objects inside the extension.
+// Also home of the format-independent entry types shared by every CaptureParser.
+public class ProxymanParser implements CaptureParser {
+    public static final ProxymanParser INSTANCE = new ProxymanParser();
+
+    private static final int IN_FLIGHT_PER_THREAD = 4;
+    private static final byte[] ZIP_MAGIC = {'P', 'K', 3, 4};
+
+    // Lightweight index record kept per imported entry. The request/response bytes are rebuilt
+    // from the capture on demand (ArchiveSource.materializeRaw) rather than held on the entry.
+    // offset locates the entry in its file and is only meaningful to the parser that emitted it.
     public static class ParsedEntry {
+        public final ArchiveSource source;
+        public final String entryName;
+        public final long offset;
         public final String host;
         public final int port;
         public final boolean secure;
         public final String method;
         public final String path;
-        public final HttpRequest request;
-        public final HttpResponse response;
-
-        public ParsedEntry(String host, int port, boolean secure, String method, String path,
-                           HttpRequest request, HttpResponse response) {
+        public final int status;
+        // Identifies the captured request/response pair across archives; see fingerprint().
+        public final long fingerprint;
+        // Response MIME type in lower case without parameters, "" when not declared.
+        public final String contentType;
+        // Response body bytes, -1 when the capture does not declare them.
+        public final long responseSize;
+        // Time from request to complete response, -1 when not recorded.
+        public final long durationMillis;
+
+        public ParsedEntry(ArchiveSource source, String entryName, long offset, String host, int port, boolean secure,
+                           String method, String path, int status, long fingerprint, String contentType,
+                           long responseSize, long durationMillis) {
+            this.source = source;
+            this.entryName = entryName;
+            this.offset = offset;
             this.host = host;
             this.port = port;
             this.secure = secure;
             this.method = method;
             this.path = path;
-            this.request = request;
-            this.response = response;
+            this.status = status;
+            this.fingerprint = fingerprint;
+            this.contentType = contentType;
+            this.responseSize = responseSize;
+            this.durationMillis = durationMillis;
+        }
+
+        // "application/json; charset=utf-8" -> "application/json".
+        public static String mimeType(String contentType) {
+            if (contentType == null) return "";
+            int semi = contentType.indexOf(';');
+            return (semi >= 0 ? contentType.substring(0, semi) : contentType).trim().toLowerCase(Locale.ROOT);
         }
     }
 
-    public static List<ParsedEntry> parse(File file) throws Exception {
-        if (file == null || !file.exists()) throw new IllegalArgumentException("File not found.");
+    // Raw HTTP bytes of one entry; response is null when the capture has none.
+    public static final class RawMessages {
+        public final byte[] request;
+        public final byte[] response;
 
-        List<ParsedEntry> results = new ArrayList<>();
+        public RawMessages(byte[] request, byte[] response) {
+            this.request = request;
+            this.response = response;
+        }
 
-        try (ZipFile zip = new ZipFile(file)) {
-            List<? extends ZipEntry> entries = Collections.list(zip.entries());
-            entries.sort(Comparator.comparing(ProxymanParser::sortKey));
+        public long size() { return request.length + (response != null ? response.length : 0L); }
+    }
 
-            for (ZipEntry ze : entries) {
-                if (ze.isDirectory()) continue;
-                if (!ze.getName().startsWith("request_")) continue;
+    public interface EntryListener {
+        void onEntry(ParsedEntry entry);
 
-                try (InputStream is = zip.getInputStream(ze)) {
-                    String json = new String(is.readAllBytes(), StandardCharsets.UTF_8);
-                    ProxymanModels.LogEntry entry = GSON.fromJson(json, ProxymanModels.LogEntry.class);
-                    if (entry == null || entry.request == null) continue;
-                    ParsedEntry pe = toParsed(entry);
-                    if (pe != null) results.add(pe);
-                }
-            }
-        }
+        default void onProgress(int done, int total) {}
 
-        return results;
+        default boolean isCancelled() { return false; }
     }
 
-    private static ParsedEntry toParsed(ProxymanModels.LogEntry e) {
-        String host = safe(e.request.host);
-        boolean secure = Boolean.TRUE.equals(e.request.isSSL);
-        int port = e.request.port != null ? e.request.port : (secure ? 443 : 80);
+    // Turns one fully decoded entry into an output record; runs on the decode threads.
+    public interface EntryConverter<T> {
+        T convert(ParsedEntry entry, RawMessages raw) throws Exception;
+    }
 
-        String method = parseStringLike(e.request.method);
-        if (method.isEmpty()) method = "GET";
+    // Receives converted records in archive order, on the calling thread.
+    public interface ConvertedSink<T> {
+        void accept(T converted) throws Exception;
+    }
 
-        String path = normalizePath(safe(e.request.fullPath));
-        if (path.isEmpty()) path = "/";
+    private interface EntryDecoder<T> {
+        T decode(ProxymanArchive.Entry ze) throws Exception;
+    }
 
-        String version = parseHttpVersion(e.request.version);
-        if (version.isEmpty()) version = "HTTP/1.1";
+    public static List<ParsedEntry> parse(File file) throws Exception {
+        List<ParsedEntry> results = new ArrayList<>();
+        parse(file, results::add);
+        return results;
+    }
 
-        String startLine = method + " " + path + " " + version + "\r\n";
-        String headers = buildHeaders(e.request.header, host, port, secure, true);
-        byte[] body = decodeBase64(e.request.bodyData);
+    public static void parse(File file, EntryListener listener) throws Exception {
+        parse(file, 1, listener);
+    }
 
-        if (body.length > 0 && !headerBlockContains(e.request.header, "Content-Length")) {
-            headers = headers + "Content-Length: " + body.length + "\r\n";
+    public static void parse(File file, int threads, EntryListener listener) throws Exception {
+        ImportStats stats = new ImportStats(file == null ? null : file.getName());
+        stats.threads(Math.max(1, threads));
+        try {
+            parse(file, threads, listener, stats);
+        } finally {
+            stats.finish(listener.isCancelled());
         }
+    }
 
-        byte[] requestBytes = concat(
-                startLine.getBytes(StandardCharsets.UTF_8),
-                headers.getBytes(StandardCharsets.UTF_8),
-                "\r\n".getBytes(StandardCharsets.UTF_8),
-                body
-        );
+    // Records into stats, which the caller owns and finishes; one instance may span several files.
+    public static void parse(File file, int threads, EntryListener listener, ImportStats stats) throws Exception {
+        CaptureParsers.parse(INSTANCE, file, threads, listener, stats);
+    }
 
-        HttpService service = HttpService.httpService(host, port, secure);
-        HttpRequest request = HttpRequest.httpRequest(service, ByteArray.byteArray(requestBytes));
+    @Override public String name() { return "Proxyman"; }
 
-        HttpResponse response;
-        if (e.response != null) {
-            String respVersion = parseHttpVersion(e.response.version);
-            if (respVersion.isEmpty()) respVersion = "HTTP/1.1";
+    @Override public String extension() { return ".proxymanlogv2"; }
 
-            StatusLine sl = parseStatus(e.response.status);
-            int status = sl.code;
-            String reason = sl.phrase != null ? sl.phrase : defaultReasonPhrase(status);
+    @Override
+    public boolean accepts(String fileName, byte[] head) {
+        return CaptureParsers.startsWith(head, ZIP_MAGIC);
+    }
 
-            String statusLine = respVersion + " " + status + (reason.isEmpty() ? "" : (" " + reason)) + "\r\n";
+    @Override
+    public Closeable open(File file) throws IOException {
+        return ProxymanArchive.open(file);
+    }
 
-            String respHeaders = buildHeaders(e.response.header, host, port, secure, false);
-            byte[] respBody = decodeBase64(e.response.bodyData);
+    @Override
+    public byte[] digest(File file) throws IOException {
+        try (ProxymanArchive archive = ProxymanArchive.open(file)) {
+            return archive.centralDirectoryDigest();
+        }
+    }
 
-            if (respBody.length > 0 && !headerBlockContains(e.response.header, "Content-Length")) {
-                respHeaders = respHeaders + "Content-Length: " + respBody.length + "\r\n";
-            }
+    @Override
+    public void parse(ArchiveSource source, int threads, EntryListener listener) throws Exception {
+        ProxymanArchive archive = source.archive();
+        List<ProxymanArchive.Entry> entries = requestEntries(archive);
+        source.stats.fileParsed(entries.size());
 
-            byte[] responseBytes = concat(
-                    statusLine.getBytes(StandardCharsets.UTF_8),
-                    respHeaders.getBytes(StandardCharsets.UTF_8),
-                    "\r\n".getBytes(StandardCharsets.UTF_8),
-                    respBody
-            );
+        decodeInOrder(entries, threads, ze -> decodeEntry(source, archive, ze), listener::onEntry, listener);
+    }
 
-            response = HttpResponse.httpResponse(ByteArray.byteArray(responseBytes));
-        } else {
-            response = HttpResponse.httpResponse("HTTP/1.1 0\r\n\r\n");
-        }
+    // Decodes every entry together with its bodies in one pass; reading each entry twice
+    // would halve bulk conversion throughput.
+    @Override
+    public <T> void convert(ArchiveSource source, int threads, EntryConverter<T> converter, ConvertedSink<T> sink) throws Exception {
+        ProxymanArchive archive = source.archive();
+        List<ProxymanArchive.Entry> entries = requestEntries(archive);
+        source.stats.fileParsed(entries.size());
 
-        return new ParsedEntry(host, port, secure, method, path, request, response);
+        decodeInOrder(entries, threads, ze -> convertEntry(source, archive, ze, converter), sink, entry -> {});
     }
 
-    private static String normalizePath(String fullPath) {
-        if (fullPath == null) return "";
-        String s = fullPath.trim();
-        if (s.isEmpty()) return "";
+    @Override
+    public RawMessages materializeRaw(ArchiveSource source, ParsedEntry entry, ImportStats stats) throws Exception {
+        return materializeRaw(source.archive(), entry, stats);
+    }
 
-        if (s.startsWith("http://") || s.startsWith("https://")) {
-            try {
-                URI u = URI.create(s);
-                String p = u.getRawPath();
-                if (p == null || p.isEmpty()) p = "/";
-                String q = u.getRawQuery();
-                if (q != null && !q.isEmpty()) p = p + "?" + q;
-                return p;
-            } catch (Exception ignored) {}
+    private static List<ProxymanArchive.Entry> requestEntries(ProxymanArchive archive) {
+        List<ProxymanArchive.Entry> entries = new ArrayList<>();
+        for (ProxymanArchive.Entry ze : archive.entries()) {
+            if (ze.isDirectory()) continue;
+            if (!ze.name.startsWith("request_")) continue;
+            entries.add(ze);
         }
-
-        return s;
+        entries.sort(Comparator.comparing(ze -> sortKey(ze.name)));
+        return entries;
     }
 
-    private static class StatusLine {
-        final int code;
-        final String phrase;
-        StatusLine(int code, String phrase) { this.code = code; this.phrase = phrase; }
+    static RawMessages materializeRaw(ProxymanArchive archive, ParsedEntry pe, ImportStats stats) throws Exception {
+        ProxymanArchive.Entry ze = archive.entryAt(pe.offset);
+        if (ze == null || !ze.name.equals(pe.entryName)) {
+            throw new IllegalStateException("Entry " + pe.entryName + " no longer in " + pe.source.file.getName());
+        }
+
+        ProxymanModels.LogEntry entry = readLogEntry(archive, ze, true, stats);
+        if (entry == null || entry.request == null) throw new IllegalStateException("Entry " + pe.entryName + " is empty");
+        return buildRaw(pe, entry, stats);
     }
 
-    private static StatusLine parseStatus(Object statusObj) {
-        if (statusObj == null) return new StatusLine(0, "");
-        if (statusObj instanceof Number n) return new StatusLine(n.intValue(), "");
-        if (statusObj instanceof String s) {
-            try { return new StatusLine(Integer.parseInt(s.trim()), ""); }
-            catch (Exception ignored) { return new StatusLine(0, ""); }
-        }
-        if (statusObj instanceof Map<?,?> map) {
-            int code = 0;
-            String phrase = "";
-            Object c = map.get("code");
-            if (c instanceof Number n) code = n.intValue();
-            else if (c instanceof String cs) {
-                try { code = Integer.parseInt(cs.trim()); } catch (Exception ignored) {}
+    // Entries are decoded out of order on the pool but handed to sink strictly in list order.
+    // At most threads * IN_FLIGHT_PER_THREAD decoded entries are held at once; null results
+    // (skipped or failed entries) still count towards progress.
+    private static <T> void decodeInOrder(List<ProxymanArchive.Entry> entries, int threads, EntryDecoder<T> decoder,
+                                          ConvertedSink<T> sink, EntryListener progress) throws Exception {
+        int total = entries.size();
+        progress.onProgress(0, total);
+
+        if (threads <= 1) {
+            for (int i = 0; i < total; i++) {
+                if (progress.isCancelled()) return;
+
+                T decoded = decoder.decode(entries.get(i));
+                if (decoded != null) sink.accept(decoded);
+                progress.onProgress(i + 1, total);
             }
-            Object p = map.get("phrase");
-            if (p instanceof String ps) phrase = ps;
-            return new StatusLine(code, phrase);
+            return;
         }
-        return new StatusLine(0, "");
-    }
 
-    private static String parseHttpVersion(Object obj) {
-        if (obj == null) return "";
+        int maxInFlight = threads * IN_FLIGHT_PER_THREAD;
+
+        AtomicInteger threadIds = new AtomicInteger();
+        ExecutorService pool = Executors.newFixedThreadPool(threads, r -> {
+            Thread t = new Thread(r, "proxyman-parse-" + threadIds.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
 
-        if (obj instanceof String s) {
-            s = s.trim();
-            if (s.isEmpty()) return "";
-            if (!s.toUpperCase(Locale.ROOT).startsWith("HTTP/") && s.matches("\\d+(\\.\\d+)?")) {
-                return "HTTP/" + s;
+        ArrayDeque<Future<T>> window = new ArrayDeque<>(maxInFlight);
+        try {
+            int submitted = 0;
+            for (int i = 0; i < total; i++) {
+                while (submitted < total && window.size() < maxInFlight) {
+                    ProxymanArchive.Entry ze = entries.get(submitted++);
+                    window.add(pool.submit(() -> decoder.decode(ze)));
+                }
+                if (progress.isCancelled()) return;
+
+                T decoded;
+                try {
+                    decoded = window.poll().get();
+                } catch (ExecutionException ex) {
+                    Throwable cause = ex.getCause();
+                    if (cause instanceof Exception ce) throw ce;
+                    throw ex;
+                }
+                if (decoded != null) sink.accept(decoded);
+                progress.onProgress(i + 1, total);
             }
-            return s;
+        } finally {
+            for (Future<T> f : window) f.cancel(true);
+            pool.shutdownNow();
         }
+    }
 
-        if (obj instanceof Map<?,?> map) {
-            Object name = map.get("name");
-            if (name instanceof String ns && !ns.trim().isEmpty()) return ns.trim();
-
-            Object major = map.get("major");
-            Object minor = map.get("minor");
-            Integer maj = toInt(major);
-            Integer min = toInt(minor);
-            if (maj != null && min != null) {
-                return "HTTP/" + maj + "." + min;
+    // A malformed entry is counted in the stats and skipped; it no longer aborts the import.
+    private static ParsedEntry decodeEntry(ArchiveSource source, ProxymanArchive archive, ProxymanArchive.Entry ze) {
+        ImportStats stats = source.stats;
+        try {
+            ProxymanModels.LogEntry entry = readLogEntry(archive, ze, false, stats);
+            if (entry == null || entry.request == null) {
+                stats.entrySkipped();
+                return null;
             }
-
-            Object value = map.get("value");
-            if (value instanceof String vs && !vs.trim().isEmpty()) return vs.trim();
+            return toParsed(source, ze, entry);
+        } catch (Exception ex) {
+            stats.entryFailed(ze.name, ex);
+            return null;
         }
-
-        return obj.toString();
     }
 
-    private static Integer toInt(Object o) {
-        if (o == null) return null;
-        if (o instanceof Number n) return n.intValue();
-        if (o instanceof String s) {
-            try {
-                double d = Double.parseDouble(s.trim());
-                return (int) d;
-            } catch (Exception ignored) { return null; }
+    private static <T> T convertEntry(ArchiveSource source, ProxymanArchive archive, ProxymanArchive.Entry ze,
+                                      EntryConverter<T> converter) {
+        ImportStats stats = source.stats;
+        try {
+            ProxymanModels.LogEntry entry = readLogEntry(archive, ze, true, stats);
+            if (entry == null || entry.request == null) {
+                stats.entrySkipped();
+                return null;
+            }
+            ParsedEntry pe = toParsed(source, ze, entry);
+            return converter.convert(pe, buildRaw(pe, entry, stats));
+        } catch (Exception ex) {
+            stats.entryFailed(ze.name, ex);
+            return null;
         }
-        return null;
     }
 
-    private static String parseStringLike(Object obj) {
-        if (obj == null) return "";
-        if (obj instanceof String s) return s;
-
-        if (obj instanceof Map<?,?> map) {
-            Object v = map.get("name");
-            if (v instanceof String) return (String)v;
-            v = map.get("value");
-            if (v instanceof String) return (String)v;
-            v = map.get("rawValue");
-            if (v instanceof String) return (String)v;
-            v = map.get("version");
-            if (v instanceof String) return (String)v;
+    // Time spent inside the archive stream is booked as INFLATE, the rest as JSON.
+    private static ProxymanModels.LogEntry readLogEntry(ProxymanArchive archive, ProxymanArchive.Entry ze,
+                                                        boolean withBodies, ImportStats stats) throws Exception {
+        long t0 = System.nanoTime();
+        ImportStats.TimedInputStream in = stats.inflating(archive.open(ze));
+        try (Reader reader = new InputStreamReader(in, StandardCharsets.UTF_8)) {
+            return ProxymanDecoder.read(reader, withBodies);
+        } finally {
+            stats.add(ImportStats.Phase.JSON, System.nanoTime() - t0 - in.nanos);
         }
-
-        return obj.toString();
     }
 
-    private static String buildHeaders(ProxymanModels.HeaderBlock hb, String host, int port, boolean secure, boolean isRequest) {
-        StringBuilder sb = new StringBuilder();
-        boolean hasHost = false;
-
-        if (hb != null && hb.entries != null) {
-            for (ProxymanModels.HeaderEntry he : hb.entries) {
-                if (he == null || he.key == null) continue;
-                if (he.isEnabled != null && !he.isEnabled) continue;
-
-                String name = safe(he.key.name);
-                String value = tryDecode(he.value);
+    private static ParsedEntry toParsed(ArchiveSource source, ProxymanArchive.Entry ze, ProxymanModels.LogEntry e) {
+        String host = safe(e.request.host);
+        boolean secure = Boolean.TRUE.equals(e.request.isSSL);
+        int port = e.request.port != null ? e.request.port : (secure ? 443 : 80);
 
-                if (name.equalsIgnoreCase("host")) hasHost = true;
+        String method = safe(e.request.method);
+        if (method.isEmpty()) method = "GET";
 
-                if (!name.isEmpty()) {
-                    sb.append(name).append(": ").append(value).append("\r\n");
-                }
-            }
-        }
+        String path = normalizePath(safe(e.request.fullPath));
+        if (path.isEmpty()) path = "/";
 
-        if (isRequest && !hasHost && host != null && !host.isEmpty()) {
-            boolean nonDefaultPort = (secure && port != 443) || (!secure && port != 80);
-            sb.append("Host: ").append(host);
-            if (nonDefaultPort) sb.append(":").append(port);
-            sb.append("\r\n");
-        }
+        int status = e.response != null ? e.response.status : 0;
+        String contentType = e.response != null ? ParsedEntry.mimeType(e.response.contentType) : "";
+        long responseSize = e.response != null ? e.response.contentLength : 0;
 
-        return sb.toString();
+        long fp = fingerprint(ze.crc, ze.size, method, host, port, path, status);
+        return new ParsedEntry(source, ze.name, ze.localHeaderOffset, host, port, secure, method, path, status, fp,
+                HeaderDictionary.SHARED.intern(contentType), responseSize, -1);
     }
 
-    private static boolean headerBlockContains(ProxymanModels.HeaderBlock hb, String headerName) {
-        if (hb == null || hb.entries == null) return false;
-        for (ProxymanModels.HeaderEntry he : hb.entries) {
-            if (he == null || he.key == null) continue;
-            String name = safe(he.key.name);
-            if (name.equalsIgnoreCase(headerName)) return true;
-        }
-        return false;
+    // The CRC-32 and size of an entry's serialized JSON already hash the whole exchange
+    // (request, response and bodies); for zip entries both come from the central directory, so
+    // the same exchange exported into two archives fingerprints the same without decoding any
+    // body. The row fields are mixed in so a CRC collision alone cannot merge rows.
+    static long fingerprint(long crc, long size, String method, String host, int port, String path, int status) {
+        long content = (crc << 32) | (size & 0xFFFFFFFFL);
+        int row = ((method.hashCode() * 31 + host.hashCode()) * 31 + port) * 31 + path.hashCode();
+        return content ^ ((row * 31L + status) * 0x9E3779B97F4A7C15L);
     }
 
-    private static byte[] decodeBase64(String b64) {
-        if (b64 == null || b64.isEmpty()) return new byte[0];
-        try {
-            int mod = b64.length() % 4;
-            if (mod != 0) b64 = b64 + "====".substring(mod);
-            return Base64.getDecoder().decode(b64);
-        } catch (Exception ex) {
-            return new byte[0];
+    private static RawMessages buildRaw(ParsedEntry pe, ProxymanModels.LogEntry e, ImportStats stats) {
+        long t0 = System.nanoTime();
+        String version = safe(e.request.version);
+        if (version.isEmpty()) version = "HTTP/1.1";
+
+        HttpMessageBuilder requestBuilder = new HttpMessageBuilder()
+                .startLine(pe.method, pe.path, version)
+                .buildHeaders(e.request.header)
+                .hostIfMissing(pe.host, pe.port, pe.secure)
+                .body(e.request.bodyData);
+        byte[] requestBytes = requestBuilder.build();
+        long base64Nanos = requestBuilder.base64Nanos();
+        long peakBody = requestBuilder.bodyLength();
+
+        byte[] responseBytes = null;
+        if (e.response != null) {
+            String respVersion = safe(e.response.version);
+            if (respVersion.isEmpty()) respVersion = "HTTP/1.1";
+
+            int status = e.response.status;
+            String reason = e.response.statusPhrase != null ? e.response.statusPhrase : defaultReasonPhrase(status);
+
+            HttpMessageBuilder responseBuilder = new HttpMessageBuilder()
+                    .startLine(respVersion, Integer.toString(status), reason)
+                    .buildHeaders(e.response.header)
+                    .body(e.response.bodyData);
+            responseBytes = responseBuilder.build();
+            base64Nanos += responseBuilder.base64Nanos();
+            peakBody = Math.max(peakBody, responseBuilder.bodyLength());
         }
-    }
 
-    private static String tryDecode(String s) {
-        if (s == null) return "";
-        if (!s.contains("%")) return s;
-        try { return URLDecoder.decode(s, StandardCharsets.UTF_8); }
-        catch (Exception ignored) { return s; }
+        stats.add(ImportStats.Phase.BASE64, base64Nanos);
+        stats.add(ImportStats.Phase.ASSEMBLY, System.nanoTime() - t0 - base64Nanos);
+        stats.materialized(peakBody);
+        return new RawMessages(requestBytes, responseBytes);
     }
 
-    private static byte[] concat(byte[]... parts) {
-        int len = 0;
-        for (byte[] p : parts) len += (p != null ? p.length : 0);
-        byte[] out = new byte[len];
-        int pos = 0;
-        for (byte[] p : parts) {
-            if (p == null) continue;
-            System.arraycopy(p, 0, out, pos, p.length);
-            pos += p.length;
+    static String normalizePath(String fullPath) {
+        if (fullPath == null) return "";
+        String s = fullPath.trim();
+        if (s.isEmpty()) return "";
+
+        if (s.startsWith("http://") || s.startsWith("https://")) {
+            try {
+                URI u = URI.create(s);
+                String p = u.getRawPath();
+                if (p == null || p.isEmpty()) p = "/";
+                String q = u.getRawQuery();
+                if (q != null && !q.isEmpty()) p = p + "?" + q;
+                return p;
+            } catch (Exception ignored) {}
         }
-        return out;
+
+        return s;
     }
 
     private static String safe(String s) { return s == null ? "" : s; }
 
-    private static String sortKey(ZipEntry ze) {
-        String n = ze.getName();
+    private static String sortKey(String n) {
         int idx = n.indexOf('_');
         if (idx >= 0 && idx + 1 < n.length()) {
             String tail = n.substring(idx + 1);
@@ -325,7 +397,7 @@ public class ProxymanParser {
         return n;
     }
 
-    private static String defaultReasonPhrase(int status) {
+    static String defaultReasonPhrase(int status) {
         return switch (status) {
             case 100 -> "Continue";
             case 101 -> "Switching Protocols";
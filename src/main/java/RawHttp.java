@@ -0,0 +1,99 @@
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+// Read-only view over one raw HTTP/1.x message as produced by HttpMessageBuilder: start line,
+// header lines and the offset of the body. Used by the exporters, which need the parts
+// separately; the bytes themselves are not copied.
+final class RawHttp {
+    final byte[] bytes;
+    final String startLine;
+    final List<String[]> headers = new ArrayList<>();
+    final int bodyOffset;
+
+    private RawHttp(byte[] bytes, String startLine, int bodyOffset) {
+        this.bytes = bytes;
+        this.startLine = startLine;
+        this.bodyOffset = bodyOffset;
+    }
+
+    static RawHttp parse(byte[] bytes) {
+        int lineEnd = indexOfCrlf(bytes, 0);
+        if (lineEnd < 0) return new RawHttp(bytes, new String(bytes, StandardCharsets.UTF_8), bytes.length);
+
+        String startLine = new String(bytes, 0, lineEnd, StandardCharsets.UTF_8);
+        List<String[]> headers = new ArrayList<>();
+        int pos = lineEnd + 2;
+        while (pos < bytes.length) {
+            int end = indexOfCrlf(bytes, pos);
+            if (end < 0) end = bytes.length;
+            if (end == pos) {
+                pos += 2;
+                break;
+            }
+            String line = new String(bytes, pos, end - pos, StandardCharsets.UTF_8);
+            int colon = line.indexOf(':');
+            if (colon > 0) headers.add(new String[]{line.substring(0, colon), line.substring(colon + 1).trim()});
+            pos = end + 2;
+        }
+
+        RawHttp raw = new RawHttp(bytes, startLine, Math.min(pos, bytes.length));
+        raw.headers.addAll(headers);
+        return raw;
+    }
+
+    // Start line split into at most three parts, e.g. {"HTTP/1.1", "200", "OK"}.
+    String[] startLineParts() {
+        String[] parts = startLine.split(" ", 3);
+        return parts.length == 3 ? parts : new String[]{parts[0], parts.length > 1 ? parts[1] : "", ""};
+    }
+
+    String header(String name) {
+        for (String[] h : headers) {
+            if (h[0].equalsIgnoreCase(name)) return h[1];
+        }
+        return null;
+    }
+
+    int bodyLength() { return bytes.length - bodyOffset; }
+
+    // Offset just past the blank line ending the headers, without parsing them; bytes.length
+    // when there is none.
+    static int bodyOffset(byte[] bytes) {
+        for (int i = 0; i + 3 < bytes.length; i++) {
+            if (bytes[i] == '\r' && bytes[i + 1] == '\n' && bytes[i + 2] == '\r' && bytes[i + 3] == '\n') return i + 4;
+        }
+        return bytes.length;
+    }
+
+    // Value of the first header called name (case-insensitive) before bodyOffset, without
+    // parsing the others; null if absent.
+    static String headerValue(byte[] bytes, int bodyOffset, String name) {
+        int pos = indexOfCrlf(bytes, 0);
+        while (pos >= 0 && pos + 2 < bodyOffset) {
+            pos += 2;
+            int end = indexOfCrlf(bytes, pos);
+            if (end < 0) end = bodyOffset;
+            if (isHeader(bytes, pos, end, name)) {
+                int colon = pos + name.length();
+                return new String(bytes, colon + 1, end - colon - 1, StandardCharsets.UTF_8).trim();
+            }
+            pos = end;
+        }
+        return null;
+    }
+
+    // Whether the header line bytes[start, end) is called name, ignoring case.
+    static boolean isHeader(byte[] bytes, int start, int end, String name) {
+        int colon = start + name.length();
+        return colon < end && bytes[colon] == ':'
+                && new String(bytes, start, name.length(), StandardCharsets.ISO_8859_1).equalsIgnoreCase(name);
+    }
+
+    static int indexOfCrlf(byte[] b, int from) {
+        for (int i = from; i + 1 < b.length; i++) {
+            if (b[i] == '\r' && b[i + 1] == '\n') return i;
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,31 @@
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+
+// Plain HTTP transcript: a "### <archive>/<entry> <METHOD> <url>" marker line, then the request
+// and the response exactly as they would be shown in Burp, each followed by a blank line.
+public class RawHttpFormat implements ExportFormat {
+    private static final byte[] EMPTY = new byte[0];
+    private static final byte[] BLANK_LINE = {'\r', '\n'};
+
+    @Override public byte[] header() { return EMPTY; }
+
+    @Override public byte[] separator() { return EMPTY; }
+
+    @Override public byte[] footer() { return EMPTY; }
+
+    @Override
+    public byte[] entry(ProxymanParser.ParsedEntry e, ProxymanParser.RawMessages raw) {
+        String marker = "### " + e.source.file.getName() + "/" + e.entryName + " " + e.method + " " + ExportFormat.url(e) + "\r\n";
+        byte[] markerBytes = marker.getBytes(StandardCharsets.UTF_8);
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream((int) Math.min(Integer.MAX_VALUE - 64, markerBytes.length + raw.size() + 8));
+        out.writeBytes(markerBytes);
+        out.writeBytes(raw.request);
+        out.writeBytes(BLANK_LINE);
+        if (raw.response != null) {
+            out.writeBytes(raw.response);
+            out.writeBytes(BLANK_LINE);
+        }
+        return out.toByteArray();
+    }
+}
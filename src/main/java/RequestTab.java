@@ -1,20 +1,35 @@
 import burp.api.montoya.MontoyaApi;
 import burp.api.montoya.http.message.HttpRequestResponse;
+import burp.api.montoya.http.message.requests.HttpRequest;
+import burp.api.montoya.http.message.responses.HttpResponse;
 import burp.api.montoya.ui.editor.HttpRequestEditor;
 import burp.api.montoya.ui.editor.HttpResponseEditor;
 
 import javax.swing.*;
 import javax.swing.border.EmptyBorder;
 import java.awt.*;
+import java.util.function.Consumer;
 
+// Request/response viewer. The same instance is re-pointed at whichever entry is selected in the
+// table; pinned tabs are separate instances bound to a single entry. Messages not in MessageCache
+// are rebuilt on a worker, since that may inflate a zip entry and a gzip body; the editors show
+// the result only if the entry is still the one asked for.
 public class RequestTab extends JPanel {
     private final MontoyaApi api;
-    private final ProxymanParser.ParsedEntry entry;
+    private final JButton pinButton = new JButton("Pin tab");
+    private final JLabel status = new JLabel();
 
-    public RequestTab(MontoyaApi api, ProxymanParser.ParsedEntry entry) {
+    private HttpRequestEditor requestEditor;
+    private HttpResponseEditor responseEditor;
+    // entry is what the editors show; requested is what setEntry last asked for.
+    private ProxymanParser.ParsedEntry entry;
+    private volatile ProxymanParser.ParsedEntry requested;
+    private String searchExpression = "";
+    private Consumer<ProxymanParser.ParsedEntry> onPin;
+
+    public RequestTab(MontoyaApi api) {
         super(new BorderLayout(10, 10));
         this.api = api;
-        this.entry = entry;
 
         setBorder(new EmptyBorder(10, 10, 10, 10));
 
@@ -24,12 +39,12 @@ public class RequestTab extends JPanel {
         JPanel buttonBar = new JPanel(new FlowLayout(FlowLayout.LEFT, 10, 0));
         buttonBar.add(sendToRepeater);
         buttonBar.add(addToSiteMap);
+        buttonBar.add(pinButton);
+        buttonBar.add(status);
+        pinButton.setVisible(false);
 
-        HttpRequestEditor requestEditor = api.userInterface().createHttpRequestEditor();
-        HttpResponseEditor responseEditor = api.userInterface().createHttpResponseEditor();
-
-        requestEditor.setRequest(entry.request);
-        responseEditor.setResponse(entry.response);
+        requestEditor = api.userInterface().createHttpRequestEditor();
+        responseEditor = api.userInterface().createHttpResponseEditor();
 
         JSplitPane split = new JSplitPane(JSplitPane.VERTICAL_SPLIT,
                 requestEditor.uiComponent(),
@@ -42,21 +57,117 @@ public class RequestTab extends JPanel {
         try { api.userInterface().applyThemeToComponent(this); } catch (Exception ignored) {}
 
         sendToRepeater.addActionListener(e -> {
+            if (entry == null) return;
             try {
                 String tabName = "Proxyman " + entry.host + " " + entry.method + " " + entry.path;
-                api.repeater().sendToRepeater(entry.request, tabName);
+                api.repeater().sendToRepeater(BurpMessages.request(entry), tabName);
             } catch (Exception ex) {
                 api.logging().logToError("Send to Repeater failed: " + ex.getMessage());
             }
         });
 
         addToSiteMap.addActionListener(e -> {
+            if (entry == null) return;
             try {
-                HttpRequestResponse rr = HttpRequestResponse.httpRequestResponse(entry.request, entry.response);
+                BurpMessages.Messages messages = BurpMessages.materialize(entry);
+                HttpRequestResponse rr = HttpRequestResponse.httpRequestResponse(messages.request, messages.response);
                 api.siteMap().add(rr);
             } catch (Exception ex) {
                 api.logging().logToError("Add to Site Map failed: " + ex.getMessage());
             }
         });
+
+        pinButton.addActionListener(e -> {
+            if (entry != null && onPin != null) onPin.accept(entry);
+        });
+    }
+
+    public ProxymanParser.ParsedEntry entry() { return entry; }
+
+    public void setOnPin(Consumer<ProxymanParser.ParsedEntry> onPin) {
+        this.onPin = onPin;
+        pinButton.setVisible(onPin != null);
+    }
+
+    // Shows the current entry again, e.g. after the decode setting changed.
+    public void reload() {
+        ProxymanParser.ParsedEntry current = requested;
+        entry = null;
+        requested = null;
+        setEntry(current);
+    }
+
+    // Highlights expression in both editors, now and for entries shown later; null clears it.
+    public void setSearchExpression(String expression) {
+        searchExpression = expression != null ? expression : "";
+        if (requestEditor == null) return;
+        requestEditor.setSearchExpression(searchExpression);
+        responseEditor.setSearchExpression(searchExpression);
+    }
+
+    public void setEntry(ProxymanParser.ParsedEntry entry) {
+        if (requestEditor == null || entry == requested) return;
+        requested = entry;
+        if (entry == null) {
+            show(null, null, "");
+            return;
+        }
+
+        BurpMessages.Messages cached = MessageCache.SHARED.get(entry);
+        if (cached != null) {
+            show(entry, cached, "");
+            return;
+        }
+
+        show(null, null, "Loading…");
+        new SwingWorker<BurpMessages.Messages, Void>() {
+            @Override
+            protected BurpMessages.Messages doInBackground() {
+                // Skipped when the selection moved on before the worker started.
+                return requested == entry ? BurpMessages.materialize(entry) : null;
+            }
+
+            @Override
+            protected void done() {
+                if (requestEditor == null || requested != entry) return;
+                try {
+                    show(entry, get(), "");
+                } catch (Exception ex) {
+                    Throwable cause = ex.getCause() != null ? ex.getCause() : ex;
+                    // Nothing is shown, so selecting the entry again retries it.
+                    requested = null;
+                    show(null, null, "Failed to load " + entry.entryName + " (see Extender errors)");
+                    api.logging().logToError("Failed to load " + entry.entryName + ": " + cause.getMessage());
+                }
+            }
+        }.execute();
+    }
+
+    // Points the editors and the buttons at entry; messages is null to clear them.
+    private void show(ProxymanParser.ParsedEntry entry, BurpMessages.Messages messages, String statusText) {
+        this.entry = entry;
+        status.setText(statusText);
+        if (messages == null) {
+            requestEditor.setRequest(HttpRequest.httpRequest(""));
+            responseEditor.setResponse(HttpResponse.httpResponse(""));
+            return;
+        }
+        requestEditor.setRequest(messages.request);
+        responseEditor.setResponse(messages.response);
+        if (!searchExpression.isEmpty()) {
+            requestEditor.setSearchExpression(searchExpression);
+            responseEditor.setSearchExpression(searchExpression);
+        }
+    }
+
+    // Montoya editors have no explicit dispose; dropping them from the component tree and
+    // releasing every reference to them and to the entry is what lets Burp reclaim them.
+    public void dispose() {
+        entry = null;
+        requested = null;
+        onPin = null;
+        removeAll();
+        requestEditor = null;
+        responseEditor = null;
     }
 }
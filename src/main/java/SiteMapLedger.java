@@ -0,0 +1,56 @@
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.CRC32C;
+
+// Requests added to Burp's Site Map during this session, by normalized request key, so
+// re-importing a capture or importing overlapping ones adds each request once. The key is the
+// method, scheme, lower-cased host, port, path and the query parameters in sorted order, plus
+// optionally a CRC-32C and length of the request body. Kept for the life of the extension, across
+// cleared tables.
+public final class SiteMapLedger {
+    public static final SiteMapLedger SHARED = new SiteMapLedger();
+
+    private final Set<String> keys = ConcurrentHashMap.newKeySet();
+
+    // request is the raw request when bodies are part of the key, otherwise null.
+    public static String key(ProxymanParser.ParsedEntry e, byte[] request) {
+        String path = e.path;
+        String query = "";
+        int q = path.indexOf('?');
+        if (q >= 0) {
+            String[] params = path.substring(q + 1).split("&");
+            Arrays.sort(params);
+            query = "?" + String.join("&", params);
+            path = path.substring(0, q);
+        }
+
+        StringBuilder key = new StringBuilder(e.method.length() + e.host.length() + e.path.length() + 32)
+                .append(e.method.toUpperCase(Locale.ROOT)).append(' ')
+                .append(e.secure ? "https" : "http").append("://").append(e.host.toLowerCase(Locale.ROOT))
+                .append(':').append(e.port).append(path).append(query);
+        if (request != null) {
+            int body = RawHttp.bodyOffset(request);
+            CRC32C crc = new CRC32C();
+            crc.update(request, body, request.length - body);
+            key.append(" #").append(Long.toHexString(crc.getValue())).append(':').append(request.length - body);
+        }
+        return key.toString();
+    }
+
+    // URL for Burp's scope check; the default port for the scheme is left out.
+    public static String url(ProxymanParser.ParsedEntry e) {
+        boolean defaultPort = e.port == (e.secure ? 443 : 80) || e.port <= 0;
+        return (e.secure ? "https://" : "http://") + e.host + (defaultPort ? "" : ":" + e.port)
+                + (e.path.startsWith("/") ? e.path : "/" + e.path);
+    }
+
+    public boolean contains(String key) { return keys.contains(key); }
+
+    public void add(String key) { keys.add(key); }
+
+    public int size() { return keys.size(); }
+
+    public void clear() { keys.clear(); }
+}
@@ -0,0 +1,80 @@
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+
+import java.io.File;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class FilterQueryTest {
+    private static final ProxymanParser.ParsedEntry ENTRY = entry(12 * 1024);
+
+    private static ProxymanParser.ParsedEntry entry(long responseSize) {
+        return new ProxymanParser.ParsedEntry(new ArchiveSource(new File("run1.har")), "request_0", 0,
+                "api.example.com", 443, true, "POST", "/v1/users/42?x=1", 503, 0,
+                "application/problem+json", responseSize, 750);
+    }
+
+    private static int test(String query, ProxymanParser.ParsedEntry e) {
+        return FilterQuery.parse(query).test(e, FilterIndex.rowText(e));
+    }
+
+    @ParameterizedTest
+    @CsvSource({
+            "status:503, YES",
+            "status:5xx, YES",
+            "status:4xx, NO",
+            "status:500-599, YES",
+            "status:200-299, NO",
+            "status>=500, YES",
+            "status<500, NO",
+            "status!=503, NO",
+            "-status:404, YES",
+            "-status:503, NO",
+            "host:*.example.com, YES",
+            "host:*.example.org, NO",
+            "host:API.EXAMPLE.COM, YES",
+            "host:example.com, NO",
+            "host~example, YES",
+            "-host:*.example.com, NO",
+            "method:post, YES",
+            "path:/v1/*, YES",
+            "type:json, YES",
+            "type:application/json, NO",
+            "size>10k, YES",
+            "size>12k, NO",
+            "size:12k, YES",
+            "size<1m, YES",
+            "size>=1m, NO",
+            "size:10k-20k, YES",
+            "time>=500, YES",
+            "time<500ms, NO",
+            "source:run1.har, YES",
+            "status:5xx host:*.example.com method:POST, YES",
+            "status:5xx method:GET, NO",
+            "users, YES",
+            "-users, NO",
+            "body~token, SCAN",
+    })
+    void matchesPrecomputedColumns(String query, String expected) {
+        int want = switch (expected) {
+            case "YES" -> FilterQuery.YES;
+            case "NO" -> FilterQuery.NO;
+            default -> FilterQuery.SCAN;
+        };
+        assertEquals(want, test(query, ENTRY), query);
+    }
+
+    @Test
+    void undeclaredSizeIsLeftToTheScan() {
+        assertEquals(FilterQuery.SCAN, test("size>10k", entry(-1)));
+        assertEquals(FilterQuery.NO, test("size>10k status:404", entry(-1)));
+    }
+
+    @ParameterizedTest
+    @CsvSource({"status>=abc", "size>10x", "method<5", "body~\"\""})
+    void rejectsMalformedValues(String query) {
+        assertThrows(IllegalArgumentException.class, () -> FilterQuery.parse(query));
+    }
+}